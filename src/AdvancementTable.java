@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-team, per-round advancement probabilities for a tournament field.
+ * Teams are indexed in the order of the starting field (initialMatches.txt),
+ * rounds are the stage a team reaches after winning that many games.
+ */
+public class AdvancementTable {
+
+    /**
+     * number of games a team has to win to become champion
+     */
+    public static final int ROUNDS = 6;
+
+    private static final String[] ROUND_NAMES = {
+        "Round of 32", "Sweet 16", "Elite Eight", "Final Four", "Championship", "Champion"
+    };
+
+    private final List<String> teams;
+    private final double[] probabilities;
+
+    /**
+     * @param teams the starting field, in bracket order
+     * @param probabilities row-major team x round matrix, teams.size() * ROUNDS long
+     */
+    public AdvancementTable(List<String> teams, double[] probabilities) {
+        if (probabilities.length != teams.size() * ROUNDS) {
+            throw new IllegalArgumentException("expected " + teams.size() * ROUNDS + " probabilities, got " + probabilities.length);
+        }
+        this.teams = new ArrayList<>(teams);
+        this.probabilities = probabilities.clone();
+    }
+
+    /**
+     * Returns the round reached by the winner of a bracket slot.
+     * The first round winners (slots 31-62) reach round 0, the champion (slot 0) round 5.
+     * @param slot index of a game in the bracket, 0-62
+     * @return the round the winner of that game reaches
+     */
+    public static int roundOfSlot(int slot) {
+        int depth = 31 - Integer.numberOfLeadingZeros(slot + 1);
+        return ROUNDS - 1 - depth;
+    }
+
+    /**
+     * @param round 0 to ROUNDS-1
+     * @return display name of the round
+     */
+    public static String roundName(int round) {
+        return ROUND_NAMES[round];
+    }
+
+    /**
+     * @return the number of teams in the table
+     */
+    public int getTeamCount() {
+        return teams.size();
+    }
+
+    /**
+     * @param team index in the starting field
+     * @return the name of the team
+     */
+    public String getTeamName(int team) {
+        return teams.get(team);
+    }
+
+    /**
+     * @param teamName name of a team
+     * @return its index in the table, or -1 if it is not in the field
+     */
+    public int indexOf(String teamName) {
+        return teams.indexOf(teamName);
+    }
+
+    /**
+     * @param team index in the starting field
+     * @param round 0 to ROUNDS-1
+     * @return the probability that the team reaches the round
+     */
+    public double getProbability(int team, int round) {
+        return probabilities[team * ROUNDS + round];
+    }
+
+    /**
+     * @param teamName name of a team
+     * @param round 0 to ROUNDS-1
+     * @return the probability that the team reaches the round
+     */
+    public double getProbability(String teamName, int round) {
+        int team = indexOf(teamName);
+        if (team < 0) {
+            throw new IllegalArgumentException("No team named " + teamName + " in the field");
+        }
+        return getProbability(team, round);
+    }
+
+    /**
+     * Formats the table as plain text, one team per line, for publishing odds.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("%-24s", "Team"));
+        for (String round : ROUND_NAMES) {
+            sb.append(String.format("%14s", round));
+        }
+        sb.append('\n');
+        for (int t = 0; t < teams.size(); t++) {
+            sb.append(String.format("%-24s", teams.get(t)));
+            for (int r = 0; r < ROUNDS; r++) {
+                sb.append(String.format("%13.2f%%", 100 * getProbability(t, r)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -1,4 +1,6 @@
 import java.util.ArrayList;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable; 
 
 /**
@@ -13,6 +15,7 @@ public class Bracket implements Serializable //Hillary: This bracket class is to
     private transient int[] teamScores = new int[127];
     private String playerName;
     private String password;
+    private transient EditListener editListener;
     static final int EAST_BRACKET = 3;
     static final int WEST_BRACKET = 4;
     static final int MIDWEST_BRACKET = 5;
@@ -70,6 +73,11 @@ public class Bracket implements Serializable //Hillary: This bracket class is to
      */
 
     public void moveTeamUp(int position){
+        doMoveTeamUp(position);
+        edited(EditListener.MOVE_TEAM_UP, position);
+    }
+
+    private void doMoveTeamUp(int position){
         int newPos = (int)((position-1)/2);
         //if (bracket.get(newPos).equals("")) removed by matt 5/7
         if(!bracket.get(position).equals(bracket.get(newPos))) {
@@ -90,6 +98,11 @@ public class Bracket implements Serializable //Hillary: This bracket class is to
      * @param root, everything below and including this is reset
      */
     public void resetSubtree(int root){
+        doResetSubtree(root);
+        edited(EditListener.RESET_SUBTREE, root);
+    }
+
+    private void doResetSubtree(int root){
         if (root == 0){//special behavior to reset final 4
             for (int i = 0; i < 7; i++) {
                 bracket.set(i,"");
@@ -99,11 +112,11 @@ public class Bracket implements Serializable //Hillary: This bracket class is to
             int child1 = 2 * root + 1;
             int child2 = 2 * root + 2;
 
-            if (child1 < 64) {//child is above round 1
-                resetSubtree(child1);
+            if (child1 < 63) {//child is above round 1, slots 63 and up hold the starting teams
+                doResetSubtree(child1);
             }
-            if (child2 < 64) {
-                resetSubtree(child2);
+            if (child2 < 63) {
+                doResetSubtree(child2);
             }
             bracket.set(root, "");
         }
@@ -115,17 +128,74 @@ public class Bracket implements Serializable //Hillary: This bracket class is to
      */
     //public void resetSubtree(int root){
     public void removeAbove(int child){//renamed by matt 5/1
+        doRemoveAbove(child);
+        edited(EditListener.REMOVE_ABOVE, child);
+    }
+
+    private void doRemoveAbove(int child){
         if (child==0)
             bracket.set(child,"");
         else {
             int parent = (int) ((child - 1) / 2);
             if (bracket.get(parent).equals(bracket.get(child))) {
-                removeAbove(parent);
+                doRemoveAbove(parent);
             }
             bracket.set(child, "");
         }
     }
 
+    /**
+     * Sets the listener told about every edit made through moveTeamUp, removeAbove and resetSubtree.
+     * It is told once per call, not for the steps those methods take internally,
+     * and is not saved with the bracket.
+     * @param listener the listener, or null to stop listening
+     */
+    public void setEditListener(EditListener listener){
+        editListener = listener;
+    }
+
+    /**
+     * Applies an edit previously reported to an EditListener, without reporting it again
+     * @param op one of the EditListener operation codes
+     * @param slot the slot the edit was made at
+     */
+    public void applyEdit(int op, int slot){
+        switch (op) {
+            case EditListener.MOVE_TEAM_UP:
+                doMoveTeamUp(slot);
+                break;
+            case EditListener.REMOVE_ABOVE:
+                doRemoveAbove(slot);
+                break;
+            case EditListener.RESET_SUBTREE:
+                doResetSubtree(slot);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown edit " + op);
+        }
+    }
+
+    private void edited(int op, int slot){
+        if (editListener != null) {
+            editListener.edited(op, slot);
+        }
+    }
+
+    /**
+     * Told about each edit a player makes to a bracket
+     */
+    public interface EditListener {
+        int MOVE_TEAM_UP = 1;
+        int REMOVE_ABOVE = 2;
+        int RESET_SUBTREE = 3;
+
+        /**
+         * @param op MOVE_TEAM_UP, REMOVE_ABOVE or RESET_SUBTREE
+         * @param slot the slot passed to the edit
+         */
+        void edited(int op, int slot);
+    }
+
     /**
      * add a value to the bracket arrayList
      * used for creating new brackets
@@ -258,5 +328,14 @@ public class Bracket implements Serializable //Hillary: This bracket class is to
     public int getTeamScore(int index){
         return teamScores[index];
     }
+
+    /**
+     * teamScores is transient, so it is not restored by deserialization
+     * and has to be recreated or getTeamScore would throw
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        teamScores = new int[127];
+    }
 }
 
@@ -0,0 +1,240 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Tooltip;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+/**
+ * Draws a whole 127 slot bracket on a single canvas, for showing the simulated results and for large
+ * displays that follow a bracket live.
+ * Where every slot goes is worked out once: the East and West regions run in from the left, Midwest
+ * and South in from the right, and the final four and the champion sit in the middle, as in the full
+ * view of BracketPane. Lines are drawn once; after that only the slots whose team changed are cleared
+ * and drawn again, so following a live bracket repaints a few small boxes per game. Hovering and
+ * clicking are hit-tested against the same geometry, so the bracket is one node however many slots it shows.
+ * FX thread only.
+ */
+public class BracketCanvas extends Canvas {
+
+    private static final int DEPTH = 6;
+    private static final double MARGIN = 20;
+    private static final double HEADER = 30;
+    private static final double COLUMN = 125;
+    private static final double SLOT_WIDTH = 115;
+    private static final double SLOT_HEIGHT = 20;
+    private static final double ROW = 26;
+    private static final double TOP = MARGIN + HEADER + SLOT_HEIGHT;
+    private static final Font FONT = Font.font(11);
+    private static final Color HOVER = Color.LIGHTCYAN;
+    private static final String[] ROUNDS = {"1st round", "2nd Round", "Sweet 16", "Elite Eight", "Final Four"};
+
+    /**
+     * left edge and baseline of every slot; the team name sits in the box above the baseline
+     */
+    private static final double[] X = new double[TournamentField.SLOTS];
+    private static final double[] Y = new double[TournamentField.SLOTS];
+    static {
+        for (int slot = 0; slot < TournamentField.SLOTS; slot++) {
+            int depth = depthOf(slot);
+            if (depth == 0) {
+                X[slot] = MARGIN + DEPTH * COLUMN;
+                Y[slot] = TOP + 13 * ROW;
+                continue;
+            }
+            int half = 1 << (depth - 1);
+            int index = slot - ((1 << depth) - 1);
+            boolean left = index < half;
+            int group = 1 << (DEPTH - depth);
+            X[slot] = MARGIN + (left ? DEPTH - depth : DEPTH + depth) * COLUMN;
+            Y[slot] = TOP + ((index % half) * group + (group - 1) / 2.0) * ROW;
+        }
+    }
+
+    private Bracket bracket;
+    //the team drawn in each slot, compared against the bracket to find what to redraw
+    private final String[] drawn = new String[TournamentField.SLOTS];
+    private final BitSet dirty = new BitSet(TournamentField.SLOTS);
+    private final Tooltip tooltip = new Tooltip();
+    private int hovered = -1;
+    private IntConsumer onSlotClicked;
+
+    /**
+     * @param bracket the bracket to show
+     */
+    public BracketCanvas(Bracket bracket) {
+        super(2 * MARGIN + (2 * DEPTH + 1) * COLUMN - (COLUMN - SLOT_WIDTH), TOP + (1 << (DEPTH - 1)) * ROW + MARGIN);
+        this.bracket = bracket;
+        setOnMouseMoved(e -> hover(slotAt(e.getX(), e.getY())));
+        setOnMouseExited(e -> hover(-1));
+        setOnMouseClicked(e -> {
+            int slot = slotAt(e.getX(), e.getY());
+            if (slot >= 0 && onSlotClicked != null) {
+                onSlotClicked.accept(slot);
+            }
+        });
+        redraw();
+    }
+
+    /**
+     * Switches to another bracket, redrawing only the slots where the two differ
+     * @param target the bracket to show
+     * @return the number of slots redrawn
+     */
+    public int setBracket(Bracket target) {
+        bracket = target;
+        return refresh();
+    }
+
+    /**
+     * Redraws the slots whose team changed since they were last drawn, for a bracket being filled in live
+     * @return the number of slots redrawn
+     */
+    public int refresh() {
+        ArrayList<String> teams = bracket.getBracket();
+        for (int slot = 0; slot < TournamentField.SLOTS; slot++) {
+            if (!teams.get(slot).equals(drawn[slot])) {
+                dirty.set(slot);
+            }
+        }
+        return drawDirty();
+    }
+
+    /**
+     * Redraws everything
+     */
+    public void redraw() {
+        GraphicsContext g = getGraphicsContext2D();
+        g.clearRect(0, 0, getWidth(), getHeight());
+        g.setStroke(Color.BLACK);
+        g.setLineWidth(1);
+        g.setFill(Color.BLACK);
+        g.setFont(FONT);
+        g.setTextBaseline(VPos.BASELINE);
+        for (int round = 0; round < ROUNDS.length; round++) {
+            g.fillText(ROUNDS[round], X[(1 << DEPTH) - 1] + round * COLUMN, MARGIN + HEADER / 2);
+            g.fillText(ROUNDS[round], X[TournamentField.SLOTS - 1] - round * COLUMN, MARGIN + HEADER / 2);
+        }
+        for (int slot = 0; slot < TournamentField.SLOTS; slot++) {
+            g.strokeLine(X[slot], Y[slot], X[slot] + SLOT_WIDTH, Y[slot]);
+            if (slot > 0) {
+                connect(g, slot);
+            }
+        }
+        dirty.set(0, TournamentField.SLOTS);
+        drawDirty();
+    }
+
+    /**
+     * @param onSlotClicked told the slot of every click on a slot, or null
+     */
+    public void setOnSlotClicked(IntConsumer onSlotClicked) {
+        this.onSlotClicked = onSlotClicked;
+    }
+
+    /**
+     * @param x x in canvas coordinates
+     * @param y y in canvas coordinates
+     * @return the slot whose box holds the point, or -1
+     */
+    public int slotAt(double x, double y) {
+        for (int slot = 0; slot < TournamentField.SLOTS; slot++) {
+            if (x >= X[slot] && x < X[slot] + SLOT_WIDTH && y >= Y[slot] - SLOT_HEIGHT && y <= Y[slot]) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Highlights a slot and gives the canvas the slot's tooltip; the tooltip is only installed while
+     * the mouse is over a slot, so the lines and gaps between slots show nothing
+     */
+    private void hover(int slot) {
+        if (slot == hovered) {
+            return;
+        }
+        if (hovered >= 0) {
+            dirty.set(hovered);
+        }
+        if (slot >= 0) {
+            dirty.set(slot);
+            String team = bracket.getBracket().get(slot);
+            try {
+                tooltip.setText(TeamRegistry.get().tooltipText(team));
+            } catch (IOException e) {
+                tooltip.setText("Info for " + team + " not found");
+            }
+            if (hovered < 0) {
+                Tooltip.install(this, tooltip);
+            }
+        } else {
+            Tooltip.uninstall(this, tooltip);
+            tooltip.hide();
+        }
+        hovered = slot;
+        drawDirty();
+    }
+
+    /**
+     * Clears and draws the box of every dirty slot, leaving the lines alone
+     * @return the number of slots drawn
+     */
+    private int drawDirty() {
+        GraphicsContext g = getGraphicsContext2D();
+        ArrayList<String> teams = bracket.getBracket();
+        int count = 0;
+        for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+            String team = teams.get(slot);
+            double top = Y[slot] - SLOT_HEIGHT;
+            //the box stops a pixel above the baseline, so the line under it is not touched
+            g.clearRect(X[slot], top, SLOT_WIDTH, SLOT_HEIGHT - 1);
+            if (slot == hovered) {
+                g.setFill(HOVER);
+                g.fillRect(X[slot], top, SLOT_WIDTH, SLOT_HEIGHT - 1);
+            }
+            g.save();
+            g.beginPath();
+            g.rect(X[slot], top, SLOT_WIDTH, SLOT_HEIGHT - 1);
+            g.clip();
+            g.setFill(Color.BLACK);
+            g.setFont(FONT);
+            g.fillText(team, X[slot] + 5, Y[slot] - 5);
+            g.restore();
+            drawn[slot] = team;
+            count++;
+        }
+        dirty.clear();
+        return count;
+    }
+
+    /**
+     * Draws the line from a slot's inner end across to the slot its winner moves up to
+     */
+    private static void connect(GraphicsContext g, int slot) {
+        int parent = (slot - 1) / 2;
+        boolean left = isLeft(slot);
+        double from = left ? X[slot] + SLOT_WIDTH : X[slot];
+        double to = left ? X[parent] : X[parent] + SLOT_WIDTH;
+        double mid = (from + to) / 2;
+        g.strokeLine(from, Y[slot], mid, Y[slot]);
+        g.strokeLine(mid, Y[slot], mid, Y[parent]);
+        g.strokeLine(mid, Y[parent], to, Y[parent]);
+    }
+
+    /**
+     * @return true for slots on the left half, the East and West side
+     */
+    private static boolean isLeft(int slot) {
+        int depth = depthOf(slot);
+        return slot - ((1 << depth) - 1) < 1 << (depth - 1);
+    }
+
+    private static int depthOf(int slot) {
+        return 31 - Integer.numberOfLeadingZeros(slot + 1);
+    }
+}
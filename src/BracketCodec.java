@@ -0,0 +1,276 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of a Bracket, used in place of default Java serialization.
+ * Team names are written as 6 bit ids into the TournamentField instead of as strings, and only the
+ * filled game slots are written, so a player's bracket takes a few dozen bytes plus name and password.
+ * The first round is not written at all: it is the field itself, whose hash is in the header.
+ * <p>
+ * Layout, version 1, big-endian:
+ * <pre>
+ * byte    MAGIC, byte VERSION
+ * int     hash of the TournamentField
+ * byte    flags: FLAG_NAME, FLAG_PASSWORD, FLAG_SCORES
+ * short   length and UTF-8 bytes of the player name, if FLAG_NAME
+ * short   length and UTF-8 bytes of the password, if FLAG_PASSWORD
+ * long    mask of the filled game slots, bit i for slot i
+ * bytes   the team id of every filled slot in slot order, 6 bits each, packed low bits first
+ * varints the score of all 127 slots, zigzag encoded, if FLAG_SCORES
+ * </pre>
+ * decode also reads Java serialized brackets, recognised by the 0xACED stream magic,
+ * so brackets saved by older versions can be migrated.
+ */
+public final class BracketCodec {
+
+    /**
+     * first byte of every encoded bracket, never the first byte of a Java serialization stream
+     */
+    public static final int MAGIC = 0x4D;
+    public static final int VERSION = 1;
+
+    private static final int FLAG_NAME = 1;
+    private static final int FLAG_PASSWORD = 2;
+    private static final int FLAG_SCORES = 4;
+    private static final int BITS_PER_TEAM = 6;
+
+    private final TournamentField field;
+    private final int fieldHash;
+
+    /**
+     * @param field the starting field every bracket is encoded against
+     */
+    public BracketCodec(TournamentField field) {
+        this.field = field;
+        this.fieldHash = field.hashCode();
+    }
+
+    /**
+     * @return the starting field brackets are encoded against
+     */
+    public TournamentField getField() {
+        return field;
+    }
+
+    /**
+     * @param bracket a bracket whose first round matches the field
+     * @return the encoded bracket
+     * @throws IllegalArgumentException if the first round differs from the field or a slot holds an unknown team
+     */
+    public byte[] encode(Bracket bracket) {
+        ArrayList<String> slots = bracket.getBracket();
+        int[] tree = new int[TournamentField.SLOTS];
+        for (int id = 0; id < TournamentField.TEAMS; id++) {
+            if (!slots.get(TournamentField.GAMES + id).equals(field.name(id))) {
+                throw new IllegalArgumentException("slot " + (TournamentField.GAMES + id) + " is not " + field.name(id));
+            }
+            tree[TournamentField.GAMES + id] = id;
+        }
+        //team ids bottom-up, a winner is nearly always one of its children so the field lookup is rarely needed
+        long filled = 0;
+        for (int i = TournamentField.GAMES - 1; i >= 0; i--) {
+            String team = slots.get(i);
+            int left = tree[2 * i + 1];
+            int right = tree[2 * i + 2];
+            if (team.equals("")) {
+                tree[i] = -1;
+                continue;
+            } else if (left >= 0 && team.equals(field.name(left))) {
+                tree[i] = left;
+            } else if (right >= 0 && team.equals(field.name(right))) {
+                tree[i] = right;
+            } else {
+                tree[i] = field.idOf(team);
+                if (tree[i] < 0) {
+                    throw new IllegalArgumentException(team + " in slot " + i + " is not in the field");
+                }
+            }
+            filled |= 1L << i;
+        }
+        boolean scores = false;
+        for (int i = 0; i < TournamentField.SLOTS && !scores; i++) {
+            scores = bracket.getTeamScore(i) != 0;
+        }
+        byte[] name = utf(bracket.getPlayerName());
+        byte[] password = utf(bracket.getPassword());
+
+        int size = 2 + 4 + 1 + (name == null ? 0 : 2 + name.length) + (password == null ? 0 : 2 + password.length)
+                + 8 + (Long.bitCount(filled) * BITS_PER_TEAM + 7) / 8 + (scores ? 5 * TournamentField.SLOTS : 0);
+        byte[] out = new byte[size];
+        out[0] = (byte) MAGIC;
+        out[1] = (byte) VERSION;
+        int at = putInt(out, 2, fieldHash);
+        out[at++] = (byte) ((name != null ? FLAG_NAME : 0) | (password != null ? FLAG_PASSWORD : 0) | (scores ? FLAG_SCORES : 0));
+        at = putUtf(out, at, name);
+        at = putUtf(out, at, password);
+        at = putInt(out, at, (int) (filled >>> 32));
+        at = putInt(out, at, (int) filled);
+        int buffer = 0;
+        int bits = 0;
+        for (long rest = filled; rest != 0; rest &= rest - 1) {
+            buffer |= tree[Long.numberOfTrailingZeros(rest)] << bits;
+            bits += BITS_PER_TEAM;
+            if (bits >= 8) {
+                out[at++] = (byte) buffer;
+                buffer >>>= 8;
+                bits -= 8;
+            }
+        }
+        if (bits > 0) {
+            out[at++] = (byte) buffer;
+        }
+        if (scores) {
+            for (int i = 0; i < TournamentField.SLOTS; i++) {
+                int score = bracket.getTeamScore(i);
+                int zigzag = (score << 1) ^ (score >> 31);
+                while ((zigzag & ~0x7F) != 0) {
+                    out[at++] = (byte) ((zigzag & 0x7F) | 0x80);
+                    zigzag >>>= 7;
+                }
+                out[at++] = (byte) zigzag;
+            }
+        }
+        return at == out.length ? out : Arrays.copyOf(out, at);
+    }
+
+    /**
+     * @param data an encoded bracket, or a Java serialized one
+     * @return the bracket
+     * @throws IOException if the data is damaged, of an unknown version or encoded against a different field
+     */
+    public Bracket decode(byte[] data) throws IOException {
+        if (isJavaSerialized(data)) {
+            return decodeSerialized(data);
+        }
+        try {
+            if ((data[0] & 0xFF) != MAGIC) {
+                throw new IOException("not an encoded bracket");
+            }
+            int version = data[1] & 0xFF;
+            if (version != VERSION) {
+                throw new IOException("unsupported bracket version " + version);
+            }
+            if (getInt(data, 2) != fieldHash) {
+                throw new IOException("bracket was encoded against a different tournament field");
+            }
+            int flags = data[6];
+            int at = 7;
+            String name = null;
+            String password = null;
+            if ((flags & FLAG_NAME) != 0) {
+                int length = getShort(data, at);
+                name = new String(data, at + 2, length, StandardCharsets.UTF_8);
+                at += 2 + length;
+            }
+            if ((flags & FLAG_PASSWORD) != 0) {
+                int length = getShort(data, at);
+                password = new String(data, at + 2, length, StandardCharsets.UTF_8);
+                at += 2 + length;
+            }
+            long filled = ((long) getInt(data, at) << 32) | (getInt(data, at + 4) & 0xFFFFFFFFL);
+            at += 8;
+            if ((filled & ~CompactBracket.ALL_GAMES) != 0) {
+                throw new IOException("bracket uses slot 63 as a game");
+            }
+
+            String[] slots = new String[TournamentField.SLOTS];
+            Arrays.fill(slots, 0, TournamentField.GAMES, "");
+            for (int id = 0; id < TournamentField.TEAMS; id++) {
+                slots[TournamentField.GAMES + id] = field.name(id);
+            }
+            int buffer = 0;
+            int bits = 0;
+            for (long rest = filled; rest != 0; rest &= rest - 1) {
+                if (bits < BITS_PER_TEAM) {
+                    buffer |= (data[at++] & 0xFF) << bits;
+                    bits += 8;
+                }
+                slots[Long.numberOfTrailingZeros(rest)] = field.name(buffer & (TournamentField.TEAMS - 1));
+                buffer >>>= BITS_PER_TEAM;
+                bits -= BITS_PER_TEAM;
+            }
+
+            Bracket bracket = new Bracket(new ArrayList<>(Arrays.asList(slots)));
+            bracket.setPlayerName(name);
+            if (password != null) {
+                bracket.setPassword(password);
+            }
+            if ((flags & FLAG_SCORES) != 0) {
+                for (int i = 0; i < TournamentField.SLOTS; i++) {
+                    int zigzag = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        int b = data[at++] & 0xFF;
+                        zigzag |= (b & 0x7F) << shift;
+                        if ((b & 0x80) == 0) {
+                            break;
+                        }
+                        if (shift >= 28) {
+                            throw new IOException("damaged score of slot " + i);
+                        }
+                    }
+                    bracket.setTeamScore(i, (zigzag >>> 1) ^ -(zigzag & 1));
+                }
+            }
+            return bracket;
+        } catch (ArrayIndexOutOfBoundsException | StringIndexOutOfBoundsException e) {
+            throw new IOException("encoded bracket is truncated", e);
+        }
+    }
+
+    /**
+     * @param data stored bytes
+     * @return true if the bytes start with the Java serialization stream magic 0xACED
+     */
+    public static boolean isJavaSerialized(byte[] data) {
+        return data.length >= 2 && (data[0] & 0xFF) == 0xAC && (data[1] & 0xFF) == 0xED;
+    }
+
+    private static byte[] utf(String s) {
+        if (s == null) {
+            return null;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("name or password is longer than 65535 bytes");
+        }
+        return bytes;
+    }
+
+    private static int putUtf(byte[] out, int at, byte[] utf) {
+        if (utf == null) {
+            return at;
+        }
+        out[at] = (byte) (utf.length >>> 8);
+        out[at + 1] = (byte) utf.length;
+        System.arraycopy(utf, 0, out, at + 2, utf.length);
+        return at + 2 + utf.length;
+    }
+
+    private static int putInt(byte[] out, int at, int value) {
+        out[at] = (byte) (value >>> 24);
+        out[at + 1] = (byte) (value >>> 16);
+        out[at + 2] = (byte) (value >>> 8);
+        out[at + 3] = (byte) value;
+        return at + 4;
+    }
+
+    private static int getInt(byte[] data, int at) {
+        return (data[at] & 0xFF) << 24 | (data[at + 1] & 0xFF) << 16 | (data[at + 2] & 0xFF) << 8 | (data[at + 3] & 0xFF);
+    }
+
+    private static int getShort(byte[] data, int at) {
+        return (data[at] & 0xFF) << 8 | (data[at + 1] & 0xFF);
+    }
+
+    private static Bracket decodeSerialized(byte[] data) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (Bracket) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable serialized bracket", e);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The brackets of a pool in one memory-mapped file of fixed size records.
+ * Each record holds a player id, flags, the 63 picks encoded as by CompactBracket and the time the
+ * bracket was finalized, so record i is at a fixed offset and scoring reads the picks straight out of
+ * the mapping without building Bracket objects. Player names are kept in a section after the records
+ * and only decoded when asked for. The header also carries a version of the source the file was
+ * written from, such as BracketStore.version, so a reader can tell whether the file is still current.
+ * Opening a file only reads the header and checks the sections fit the file, so it takes the same time for
+ * a pool of ten players as for one of millions; each player id and name is checked when it is read.
+ * <p>
+ * Layout, big-endian: a HEADER_BYTES header (magic, version, record count, record size, offset of the
+ * names section, source version, TournamentField.fingerprint of the field the picks were encoded against),
+ * the records, then the names section: one int offset per player followed by the names as length
+ * prefixed UTF-8.
+ */
+public final class BracketFile implements Closeable {
+
+    /**
+     * flag set on brackets that were finalized by their player
+     */
+    public static final int FLAG_FINALIZED = 1;
+
+    private static final int MAGIC = 0x4D4D4246;           //"MMBF"
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 40;
+    private static final int RECORD_BYTES = 24;
+    private static final int PLAYER_ID = 0;
+    private static final int FLAGS = 4;
+    private static final int PICKS = 8;
+    private static final int FINALIZED_AT = 16;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final TournamentField field;
+    private final int count;
+    private final int namesOffset;
+    private final long sourceVersion;
+    private HashMap<String, Integer> byName;
+
+    private BracketFile(Path path, FileChannel channel, MappedByteBuffer map, TournamentField field, int count,
+                        int namesOffset, long sourceVersion) {
+        this.path = path;
+        this.channel = channel;
+        this.map = map;
+        this.field = field;
+        this.count = count;
+        this.namesOffset = namesOffset;
+        this.sourceVersion = sourceVersion;
+    }
+
+    /**
+     * Writes every complete bracket of a list. Incomplete brackets are left out.
+     * @param path the file to write, replaced if it exists
+     * @param field the starting field of the tournament
+     * @param brackets the player brackets
+     * @param finalized whether each bracket was finalized by its player, aligned with brackets
+     * @param finalizedAt milliseconds since the epoch at which each bracket was finalized, 0 if that is not
+     *                    known or the bracket was not finalized, aligned with brackets
+     * @param sourceVersion version of what the brackets were read from, returned by getSourceVersion
+     * @return the number of brackets written
+     */
+    public static int write(Path path, TournamentField field, List<Bracket> brackets, boolean[] finalized,
+                            long[] finalizedAt, long sourceVersion) throws IOException {
+        if (finalized.length < brackets.size() || finalizedAt.length < brackets.size()) {
+            throw new IllegalArgumentException("finalized and finalizedAt must cover every bracket");
+        }
+        List<String> names = new ArrayList<>(brackets.size());
+        long[] picks = new long[brackets.size()];
+        int[] flags = new int[brackets.size()];
+        long[] times = new long[brackets.size()];
+        for (int i = 0; i < brackets.size(); i++) {
+            Bracket bracket = brackets.get(i);
+            try {
+                picks[names.size()] = CompactBracket.encode(bracket, field);
+            } catch (IllegalArgumentException notComplete) {
+                //only complete brackets can be scored from picks
+                continue;
+            }
+            flags[names.size()] = finalized[i] ? FLAG_FINALIZED : 0;
+            times[names.size()] = finalized[i] ? finalizedAt[i] : 0;
+            names.add(bracket.getPlayerName());
+        }
+        write(path, field, names, picks, flags, times, sourceVersion);
+        return names.size();
+    }
+
+    /**
+     * @param path the file to write, replaced if it exists
+     * @param field the starting field the picks were encoded against
+     * @param names player names, the player id of each entry is its position in this list
+     * @param picks encoded picks, aligned with names
+     * @param flags flags of each entry, see FLAG_FINALIZED, aligned with names
+     * @param finalizedAt milliseconds since the epoch at which each bracket was finalized, 0 if not known,
+     *                    aligned with names
+     * @param sourceVersion version of what the brackets were read from, returned by getSourceVersion
+     */
+    public static void write(Path path, TournamentField field, List<String> names, long[] picks, int[] flags,
+                             long[] finalizedAt, long sourceVersion) throws IOException {
+        int count = names.size();
+        if (picks.length < count || flags.length < count || finalizedAt.length < count) {
+            throw new IllegalArgumentException("picks, flags and finalizedAt must cover every name");
+        }
+        //names section: offset table relative to the section, then the names
+        ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+        DataOutputStream nameOut = new DataOutputStream(nameBytes);
+        int[] offsets = new int[count];
+        int tableBytes = 4 * count;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = tableBytes + nameOut.size();
+            byte[] utf = names.get(i).getBytes(StandardCharsets.UTF_8);
+            nameOut.writeInt(utf.length);
+            nameOut.write(utf);
+        }
+        long namesOffset = HEADER_BYTES + (long) count * RECORD_BYTES;
+        if (namesOffset + tableBytes + nameOut.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(count + " brackets do not fit in one mapping");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) namesOffset + tableBytes + nameOut.size()).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(RECORD_BYTES)
+                .putLong(namesOffset).putLong(sourceVersion).putLong(field.fingerprint());
+        buffer.position(HEADER_BYTES);
+        for (int i = 0; i < count; i++) {
+            if ((picks[i] & ~CompactBracket.ALL_GAMES) != 0) {
+                throw new IllegalArgumentException("picks of " + names.get(i) + " use bit 63");
+            }
+            buffer.putInt(i).putInt(flags[i]).putLong(picks[i]).putLong(finalizedAt[i]);
+        }
+        for (int offset : offsets) {
+            buffer.putInt(offset);
+        }
+        buffer.put(nameBytes.toByteArray());
+        buffer.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a bracket file
+     * @param path the file
+     * @param field the starting field the caller will score against
+     * @return the open file
+     * @throws IOException if the file is not a bracket file, is damaged or was written for a different field
+     */
+    public static BracketFile open(Path path, TournamentField field) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not a bracket file");
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (map.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a bracket file");
+            }
+            if (map.getInt(4) != VERSION) {
+                throw new IOException(path + " has unsupported version " + map.getInt(4));
+            }
+            int count = map.getInt(8);
+            if (map.getInt(12) != RECORD_BYTES) {
+                throw new IOException(path + " has " + map.getInt(12) + " byte records, expected " + RECORD_BYTES);
+            }
+            if (map.getLong(32) != field.fingerprint()) {
+                throw new IOException(path + " was written for a different tournament field");
+            }
+            long namesOffset = map.getLong(16);
+            if (count < 0 || namesOffset != HEADER_BYTES + (long) count * RECORD_BYTES
+                    || namesOffset + 4L * count > size) {
+                throw new IOException(path + " is truncated or damaged");
+            }
+            return new BracketFile(path, channel, map, field, count, (int) namesOffset, map.getLong(24));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of brackets in the file
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the version of the source the file was written from
+     */
+    public long getSourceVersion() {
+        return sourceVersion;
+    }
+
+    /**
+     * @return the starting field the picks were encoded against
+     */
+    public TournamentField getField() {
+        return field;
+    }
+
+    /**
+     * @param i record number, 0 to size() - 1
+     * @return the encoded picks of the record, see CompactBracket
+     */
+    public long picks(int i) {
+        return map.getLong(record(i) + PICKS);
+    }
+
+    /**
+     * @param i record number
+     * @return the player id of the record
+     * @throws UncheckedIOException if the record's player id is out of range, the file is damaged
+     */
+    public int playerId(int i) {
+        int playerId = map.getInt(record(i) + PLAYER_ID);
+        if (playerId < 0 || playerId >= count) {
+            throw damaged("record " + i + " has player id " + playerId + " of " + count);
+        }
+        return playerId;
+    }
+
+    /**
+     * @param i record number
+     * @return the flags of the record, see FLAG_FINALIZED
+     */
+    public int flags(int i) {
+        return map.getInt(record(i) + FLAGS);
+    }
+
+    /**
+     * @param i record number
+     * @return milliseconds since the epoch at which the bracket was finalized, 0 if not known or not finalized
+     */
+    public long finalizedAt(int i) {
+        return map.getLong(record(i) + FINALIZED_AT);
+    }
+
+    /**
+     * @param playerId a player id from playerId
+     * @return the player's name
+     * @throws UncheckedIOException if the name lies outside the names section, the file is damaged
+     */
+    public String name(int playerId) {
+        if (playerId < 0 || playerId >= count) {
+            throw new IndexOutOfBoundsException("player " + playerId + " of " + count);
+        }
+        long at = namesOffset + (long) map.getInt(namesOffset + 4 * playerId);
+        if (at < namesOffset + 4L * count || at + 4 > map.capacity()) {
+            throw damaged("the name of player " + playerId + " is outside the file");
+        }
+        int length = map.getInt((int) at);
+        if (length < 0 || at + 4 + length > map.capacity()) {
+            throw damaged("the name of player " + playerId + " has length " + length);
+        }
+        byte[] utf = new byte[length];
+        ByteBuffer view = map.duplicate();
+        view.position((int) at + 4);
+        view.get(utf);
+        return new String(utf, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Looks up a player by name. The first call decodes every name, later calls are a hash lookup.
+     * @param name player name
+     * @return the record number of the player, or -1 if the player is not in the file
+     */
+    public synchronized int indexOf(String name) {
+        if (byName == null) {
+            byName = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                byName.put(name(playerId(i)), i);
+            }
+        }
+        Integer i = byName.get(name);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * @param i record number
+     * @return the bracket of the record, named after its player
+     */
+    public Bracket toBracket(int i) {
+        return new Bracket(new Bracket(CompactBracket.toList(picks(i), field)), name(playerId(i)));
+    }
+
+    /**
+     * Copies every record's picks out of the mapping
+     * @return the picks, aligned with the record numbers
+     */
+    public long[] toPicks() {
+        long[] picks = new long[count];
+        for (int i = 0; i < count; i++) {
+            picks[i] = picks(i);
+        }
+        return picks;
+    }
+
+    /**
+     * Closes the file; the mapping stays valid until it is garbage collected
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private UncheckedIOException damaged(String what) {
+        return new UncheckedIOException(new IOException(path + " is damaged: " + what));
+    }
+
+    private int record(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("record " + i + " of " + count);
+        }
+        return HEADER_BYTES + i * RECORD_BYTES;
+    }
+}
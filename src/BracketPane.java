@@ -23,6 +23,7 @@ import javafx.scene.text.TextAlignment;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 import javafx.scene.layout.Region;
 
@@ -31,6 +32,9 @@ import javafx.scene.control.Tooltip;
 
 /**
  * Created by Richard and Ricardo on 5/3/17.
+ * The layout never changes, so one pane is built per session and reused: setBracket switches it to
+ * another bracket and refresh brings it up to date after the bracket changed, both only touching the
+ * labels whose team changed.
  */
 public class BracketPane extends BorderPane {
 
@@ -71,6 +75,27 @@ public class BracketPane extends BorderPane {
          * Stores the region bracket selection buttons
          */
         private ArrayList<StackPane> buttons;
+        /**
+         * The grid of region buttons shown before a region is picked
+         */
+        private GridPane buttonGrid;
+        /**
+         * The scroll pane around each region pane, made the first time the region is shown
+         */
+        private HashMap<StackPane, ScrollPane> scrollPanes = new HashMap<>();
+        /**
+         * The four region subtrees, East, West, Midwest and South
+         */
+        private ArrayList<Root> roots;
+        /**
+         * The two halves of the full view, each holding two of the roots
+         */
+        private GridPane leftHalf;
+        private GridPane rightHalf;
+        /**
+         * The round names shown above a region, built once
+         */
+        private HBox regionLevels;
         /**
          * stores the index of the last pane the user was on
          */
@@ -93,6 +118,38 @@ public class BracketPane extends BorderPane {
             clearSubtree(displayedSubtree);
         }
 
+        /**
+         * Brings the labels up to date with the current bracket, only changing those whose team changed
+         *
+         * @return the number of labels changed
+         */
+        public int refresh() {
+                int changed = 0;
+                ArrayList<String> teams = currentBracket.getBracket();
+                for (Map.Entry<Integer, BracketNode> e : nodeMap.entrySet()) {
+                        String team = teams.get(e.getKey());
+                        if (!team.equals(e.getValue().getName())) {
+                                e.getValue().setName(team);
+                                changed++;
+                        }
+                }
+                return changed;
+        }
+
+        /**
+         * Goes back to the region buttons, as a new pane would start
+         */
+        public void showButtonGrid() {
+                lastPaneIndex = 5;
+                displayedSubtree = 0;
+                setCenter(buttonGrid);
+        }
+
+        /**
+         * shared by every hovered node, only one is hovered at a time
+         */
+        private static final InnerShadow HOVER_EFFECT = new InnerShadow(10, Color.LIGHTCYAN);
+
         /**
          * Handles clicked events for BracketNode objects
          */
@@ -116,27 +173,24 @@ public class BracketPane extends BorderPane {
          * Handles mouseEntered events for BracketNode objects
          */
         private EventHandler<MouseEvent> enter = mouseEvent -> {
-                BracketNode tmp = (BracketNode) mouseEvent.getSource();
-                tmp.setStyle("-fx-background-color: lightcyan;");
-                tmp.setEffect(new InnerShadow(10, Color.LIGHTCYAN));
-                String text = "";
-                        BracketNode n = (BracketNode) mouseEvent.getSource();
-                        int treeNum = bracketMap.get(n);
-                        String teamName = currentBracket.getBracket().get(treeNum);
-                        try {
-                                TournamentInfo info = new TournamentInfo();
-                                Team t = info.getTeam(teamName);
-                                //by Tyler - added the last two pieces of info to the pop up window
-                                text += "Team: " + teamName + " | Ranking: " + t.getRanking() + "\nMascot: " + t.getNickname() + "\nInfo: " + t.getInfo() + "\nAverage Offensive PPG: " + t.getOffensePPG() + "\nAverage Defensive PPG: "+ t.getDefensePPG();
-                        } catch (IOException | NullPointerException e) {//if for some reason TournamentInfo isnt working, it will display info not found
-                                text += "Info for " + teamName + "not found";
-                        }
-                        /**
-                        *Max Hernandez 4/5/19
-                        * creates a tooltip window when the mouse is hovered over a bracketnode
-                        */
-                        Tooltip teamInfo = new Tooltip(text);
-                        Tooltip.install(n, teamInfo);
+                BracketNode n = (BracketNode) mouseEvent.getSource();
+                n.setStyle("-fx-background-color: lightcyan;");
+                n.setEffect(HOVER_EFFECT);
+                int treeNum = bracketMap.get(n);
+                String teamName = currentBracket.getBracket().get(treeNum);
+                String text;
+                try {
+                        //the registry is loaded once and holds the text of every team
+                        text = TeamRegistry.get().tooltipText(teamName);
+                } catch (IOException e) {//if for some reason TournamentInfo isnt working, it will display info not found
+                        text = "Info for " + teamName + "not found";
+                }
+                /**
+                *Max Hernandez 4/5/19
+                * shows a tooltip window when the mouse is hovered over a bracketnode,
+                * each node reuses its own tooltip
+                */
+                n.setTooltipText(text);
         };
 
         /**
@@ -158,8 +212,8 @@ public class BracketPane extends BorderPane {
 
 
         /**
-         * TODO: Reduce. reuse, recycle!
          * Initializes the properties needed to construct a bracket.
+         * Builds every node and line, so make one and reuse it through setBracket.
          */
         public BracketPane(Bracket currentBracket) {
                 displayedSubtree=0;
@@ -169,7 +223,7 @@ public class BracketPane extends BorderPane {
                 nodeMap = new HashMap<>();
                 panes = new HashMap<>();
                 nodes = new ArrayList<>();
-                ArrayList<Root> roots = new ArrayList<>();
+                roots = new ArrayList<>();
 
                 center = new GridPane();
 
@@ -192,26 +246,23 @@ public class BracketPane extends BorderPane {
                 //buttons.add(customButton("FINAL"));
                 //panes.put(buttons.get(5), finalPane);
                 fullPane = new GridPane();
-                GridPane gp1 = new GridPane();
-                
-                gp1.add(levels(), 0,0);
-                gp1.add(roots.get(0), 0, 1);
-                gp1.add(roots.get(1), 0, 2);
-                GridPane gp2 = new GridPane();
-                gp2.add(levels(), 0, 0);
-                gp2.add(roots.get(2), 0, 1);
-                gp2.add(roots.get(3), 0, 2);
-                gp2.setNodeOrientation(NodeOrientation.RIGHT_TO_LEFT);
-
-                fullPane.add(gp1, 0, 0);
+                leftHalf = new GridPane();
+                leftHalf.add(levels(), 0, 0);
+                rightHalf = new GridPane();
+                rightHalf.add(levels(), 0, 0);
+                rightHalf.setNodeOrientation(NodeOrientation.RIGHT_TO_LEFT);
+                placeRoots();
+                regionLevels = levels();
+
+                fullPane.add(leftHalf, 0, 0);
                 fullPane.add(finalPane, 1, 0, 1, 2);
-                fullPane.add(gp2, 2, 0);
+                fullPane.add(rightHalf, 2, 0);
                 fullPane.setAlignment(Pos.CENTER);
                 panes.put(buttons.get((buttons.size() - 1)), fullPane);
                 finalPane.toBack();
 
                 // Initializes the button grid
-                GridPane buttonGrid = new GridPane();
+                buttonGrid = new GridPane();
                 for (int i = 0; i < buttons.size(); i++)
                         buttonGrid.add(buttons.get(i), 0, i);
                 buttonGrid.setAlignment(Pos.CENTER);
@@ -243,10 +294,11 @@ public class BracketPane extends BorderPane {
                                  * added if statement to check if the button is full bracket
                                  * if not adds the levels to the region bracket
                                  */
+                                center.getChildren().clear();
                                 if(buttons.size()-1!= buttons.indexOf(t)){
-                                    center.add(levels(), 0,0);
+                                    center.add(regionLevels, 0,0);
                                 }
-                                center.add(new ScrollPane(panes.get(t)), 0, 1);
+                                center.add(scrollPaneFor(t), 0, 1);
                                 center.setAlignment(Pos.CENTER);
                                 setCenter(center);
                                 //Grant 5/7 this is for clearing the tree it kind of works 
@@ -256,6 +308,42 @@ public class BracketPane extends BorderPane {
 
         }
 
+        /**
+         * Returns the scroll pane showing a button's pane, made on first use.
+         * A node has only one parent, so a region view borrows its root from the full view,
+         * and showing the full view takes every borrowed root back.
+         *
+         * @param button a region button or the full button
+         * @return the scroll pane, ready to be shown
+         */
+        private ScrollPane scrollPaneFor(StackPane button) {
+                ScrollPane scroll = scrollPanes.computeIfAbsent(button, b -> new ScrollPane());
+                if (panes.get(button) == fullPane) {
+                        for (ScrollPane region : scrollPanes.values()) {
+                                if (region != scroll) {
+                                        region.setContent(null);
+                                }
+                        }
+                        placeRoots();
+                }
+                if (scroll.getContent() != panes.get(button)) {
+                        scroll.setContent(panes.get(button));
+                }
+                return scroll;
+        }
+
+        /**
+         * Puts each root that is not in the full view back in its place there
+         */
+        private void placeRoots() {
+                for (int m = 0; m < roots.size(); m++) {
+                        GridPane half = m < 2 ? leftHalf : rightHalf;
+                        if (roots.get(m).getParent() != half) {
+                                half.add(roots.get(m), 0, m % 2 + 1);
+                        }
+                }
+        }
+
         /**
          * Helpful method to retrieve our magical numbers
          *
@@ -282,6 +370,8 @@ public class BracketPane extends BorderPane {
          */
         public void setBracket(Bracket target) {
                 currentBracket = target;
+                finalized = false;
+                refresh();
         }
 
         /**
@@ -291,13 +381,17 @@ public class BracketPane extends BorderPane {
          */
         public void clearSubtree(int position) {
                 currentBracket.resetSubtree(position);
+                refresh();
         }
 
         /**
-         * Resets the bracket-display
+         * Resets the bracket-display, clearing every pick
          */
         public void resetBracket() {
+                currentBracket.resetSubtree(1);
+                currentBracket.resetSubtree(2);
                 currentBracket.resetSubtree(0);
+                refresh();
         }
 
         /**
@@ -522,6 +616,7 @@ public class BracketPane extends BorderPane {
                 private String teamName;
                 private Rectangle rect;
                 private Label name;
+                private Tooltip tooltip;
 
                 /**
                  * Creates a BracketNode with,
@@ -559,5 +654,19 @@ public class BracketPane extends BorderPane {
                         this.teamName = teamName;
                         name.setText(teamName);
                 }
+
+                /**
+                 * Shows the text in this node's tooltip, installing the tooltip on first use
+                 *
+                 * @param text The text to show
+                 */
+                public void setTooltipText(String text) {
+                        if (tooltip == null) {
+                                tooltip = new Tooltip(text);
+                                Tooltip.install(this, tooltip);
+                        } else {
+                                tooltip.setText(text);
+                        }
+                }
         }
 }
@@ -0,0 +1,674 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Log structured store for player brackets, replacing one .ser file per player.
+ * <p>
+ * Every save appends a record to the active segment file; a newer record for the same player
+ * supersedes the older one. An in-memory index maps each player name to the location of their
+ * latest record, so a lookup is one hash lookup and one positioned read. The index also keeps each
+ * player's password, so players can be authenticated without reading any bracket. It is written to
+ * index.dat on close and after every compaction, together with how far each segment had been indexed,
+ * so opening the store reads the index and only scans records appended after it was saved.
+ * If the index is missing or does not match the segments it is rebuilt by scanning every segment.
+ * <p>
+ * Segments are sealed once they reach a size limit. A background thread rewrites sealed segments
+ * that are mostly superseded records into a new segment holding only the live ones, then deletes them.
+ * Records carry a sequence number so the newest version always wins, whatever segment it ends up in.
+ * <p>
+ * Record layout: int length, long sequence, UTF player name, int payload length, payload, int CRC32
+ * of everything between the length and the CRC. The payload is a BracketCodec encoded bracket;
+ * records written by earlier versions hold Java serialized brackets, which the codec still reads.
+ */
+public class BracketStore implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_FILE = "index.dat";
+    private static final int INDEX_MAGIC = 0x4D4D4958;     //"MMIX"
+    private static final int INDEX_VERSION = 2;
+    private static final long DEFAULT_SEGMENT_BYTES = 16L * 1024 * 1024;
+
+    private final Path directory;
+    private final BracketCodec codec;
+    private final long segmentBytes;
+    private final HashMap<String, Location> index = new HashMap<>();
+    /**
+     * open segments by id, the highest id is not necessarily the active one after a compaction
+     */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bracket-store-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private Segment active;
+    private int nextSegmentId;
+    private long nextSequence;
+    private boolean compacting;
+    private boolean closed;
+
+    private BracketStore(Path directory, BracketCodec codec, long segmentBytes) {
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Opens the store in a directory, creating it if needed
+     * @param directory where the segments and index live
+     * @param codec encodes the brackets of the tournament the store belongs to
+     * @return the open store
+     */
+    public static BracketStore open(Path directory, BracketCodec codec) throws IOException {
+        return open(directory, codec, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param directory where the segments and index live
+     * @param codec encodes the brackets of the tournament the store belongs to
+     * @param segmentBytes size at which the active segment is sealed and a new one started
+     * @return the open store
+     */
+    public static BracketStore open(Path directory, BracketCodec codec, long segmentBytes) throws IOException {
+        Files.createDirectories(directory);
+        BracketStore store = new BracketStore(directory, codec, segmentBytes);
+        store.load();
+        return store;
+    }
+
+    /**
+     * Saves a bracket under its player name, superseding any earlier save of that player
+     * @param bracket the bracket, with a player name
+     */
+    public synchronized void put(Bracket bracket) throws IOException {
+        String name = bracket.getPlayerName();
+        if (name == null) {
+            throw new IllegalArgumentException("bracket has no player name");
+        }
+        append(name, bracket.getPassword(), codec.encode(bracket));
+    }
+
+    /**
+     * Saves a bracket that was already encoded with getCodec, superseding any earlier save of that player
+     * @param name player name
+     * @param password the player's password, kept in the index
+     * @param payload the encoded bracket
+     */
+    public synchronized void put(String name, String password, byte[] payload) throws IOException {
+        append(name, password, payload);
+    }
+
+    /**
+     * @return the codec the store encodes brackets with
+     */
+    public BracketCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Forces everything written so far to disk
+     */
+    public synchronized void sync() throws IOException {
+        checkOpen();
+        active.channel.force(false);
+    }
+
+    /**
+     * @param name player name
+     * @return the player's latest saved bracket, or null if the player has never been saved
+     */
+    public Bracket get(String name) throws IOException {
+        byte[] payload;
+        synchronized (this) {
+            checkOpen();
+            Location location = index.get(name);
+            if (location == null) {
+                return null;
+            }
+            payload = readRecord(segments.get(location.segment), location.offset).payload;
+        }
+        return codec.decode(payload);
+    }
+
+    /**
+     * Reads the password from the index, without reading the bracket
+     * @param name player name
+     * @return the password saved with the player's latest bracket, or null if the player has never been saved
+     */
+    public synchronized String getPassword(String name) {
+        Location location = index.get(name);
+        return location == null ? null : location.password;
+    }
+
+    /**
+     * @param name player name
+     * @return true if the player has a saved bracket
+     */
+    public synchronized boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    /**
+     * @return the names of every saved player
+     */
+    public synchronized Set<String> names() {
+        return Collections.unmodifiableSet(new HashSet<>(index.keySet()));
+    }
+
+    /**
+     * @return the number of saved players
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return a number that grows with every save, so a copy of the brackets taken at one version
+     * is known to be current as long as the version has not moved
+     */
+    public synchronized long version() {
+        return nextSequence;
+    }
+
+    /**
+     * Reads every saved bracket, in segment order so the reads are mostly sequential
+     * @return the latest bracket of every player
+     */
+    public List<Bracket> loadAll() throws IOException {
+        List<Map.Entry<String, Location>> locations;
+        synchronized (this) {
+            locations = new ArrayList<>(index.entrySet());
+        }
+        locations.sort((a, b) -> a.getValue().segment != b.getValue().segment
+                ? Integer.compare(a.getValue().segment, b.getValue().segment)
+                : Long.compare(a.getValue().offset, b.getValue().offset));
+        List<Bracket> brackets = new ArrayList<>(locations.size());
+        for (Map.Entry<String, Location> entry : locations) {
+            Bracket bracket = get(entry.getKey());
+            if (bracket != null) {
+                brackets.add(bracket);
+            }
+        }
+        return brackets;
+    }
+
+    /**
+     * Rewrites mostly superseded sealed segments now, on the calling thread
+     */
+    public void compact() throws IOException {
+        List<Integer> victims = new ArrayList<>();
+        synchronized (this) {
+            checkOpen();
+            if (compacting) {
+                return;
+            }
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.liveBytes * 2 < segment.size) {
+                    victims.add(segment.id);
+                }
+            }
+            if (victims.isEmpty()) {
+                return;
+            }
+            compacting = true;
+        }
+        try {
+            Segment target = null;
+            for (int victim : victims) {
+                target = compactSegment(victim, target);
+            }
+            synchronized (this) {
+                if (target.size == 0) {
+                    segments.remove(target.id);
+                    target.channel.close();
+                    Files.deleteIfExists(segmentPath(target.id));
+                }
+                saveIndex();
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Syncs the active segment, saves the index and closes every segment
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            active.channel.force(false);
+            saveIndex();
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            closed = true;
+        }
+    }
+
+    private void append(String name, String password, byte[] payload) throws IOException {
+        checkOpen();
+        long sequence = nextSequence++;
+        ByteBuffer record = encodeRecord(sequence, name, payload);
+        int length = record.remaining();
+        if (active.size > 0 && active.size + length > segmentBytes) {
+            rollOver();
+        }
+        long offset = active.size;
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + (length - record.remaining()));
+        }
+        active.size += length;
+        index(name, new Location(active.id, offset, length, sequence, password));
+    }
+
+    /**
+     * Points the index at a new record and keeps the live byte counts of the segments in step
+     */
+    private void index(String name, Location location) {
+        Location previous = index.put(name, location);
+        if (previous != null) {
+            Segment old = segments.get(previous.segment);
+            if (old != null) {
+                old.liveBytes -= previous.length;
+            }
+        }
+        segments.get(location.segment).liveBytes += location.length;
+    }
+
+    private void rollOver() throws IOException {
+        active.channel.force(false);
+        active = openSegment(nextSegmentId++);
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (IOException | IllegalStateException e) {
+                //compaction is an optimisation, the store stays correct without it
+            }
+        });
+    }
+
+    /**
+     * Copies the live records of a sealed segment into a compaction target and deletes the segment
+     * @param target segment receiving the copies, null or full to start a new one
+     * @return the target that was used
+     */
+    private Segment compactSegment(int victimId, Segment target) throws IOException {
+        Segment victim;
+        List<Map.Entry<String, Location>> live = new ArrayList<>();
+        synchronized (this) {
+            victim = segments.get(victimId);
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                if (entry.getValue().segment == victimId) {
+                    live.add(entry);
+                }
+            }
+            if (target == null || target.size >= segmentBytes) {
+                target = openSegment(nextSegmentId++);
+            }
+        }
+        //copy the live records without holding the lock, sealed segments never change
+        List<Location> copied = new ArrayList<>(live.size());
+        for (Map.Entry<String, Location> entry : live) {
+            Location from = entry.getValue();
+            ByteBuffer bytes = ByteBuffer.allocate(from.length);
+            readFully(victim.channel, bytes, from.offset);
+            bytes.flip();
+            long offset = target.size;
+            while (bytes.hasRemaining()) {
+                target.channel.write(bytes, offset + (from.length - bytes.remaining()));
+            }
+            target.size += from.length;
+            copied.add(new Location(target.id, offset, from.length, from.sequence, from.password));
+        }
+        target.channel.force(false);
+        synchronized (this) {
+            for (int i = 0; i < live.size(); i++) {
+                String name = live.get(i).getKey();
+                //only move records that were not superseded while copying
+                if (index.get(name) == live.get(i).getValue()) {
+                    index(name, copied.get(i));
+                }
+            }
+            segments.remove(victimId);
+            victim.channel.close();
+            Files.deleteIfExists(segmentPath(victimId));
+        }
+        return target;
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, channel);
+        segment.size = channel.size();
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Opens every segment, loads the index and scans whatever the index does not cover
+     */
+    private void load() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                openSegment(id);
+            }
+        }
+        Map<Integer, Long> indexed = loadIndex();
+        if (indexed == null) {
+            //no usable index, rebuild it from every record
+            index.clear();
+            for (Segment segment : segments.values()) {
+                segment.liveBytes = 0;
+            }
+            indexed = Collections.emptyMap();
+        }
+        for (Segment segment : segments.values()) {
+            Long from = indexed.get(segment.id);
+            scan(segment, from == null ? 0 : from);
+        }
+        nextSegmentId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        active = segments.isEmpty() ? openSegment(nextSegmentId++) : segments.lastEntry().getValue();
+    }
+
+    /**
+     * Applies the records of a segment from an offset on.
+     * A crash can only tear the last record appended to a segment, so a damaged record past the indexed
+     * part of the segment that no readable record follows is cut off and the records before it are kept.
+     * That is not always the highest numbered segment, compaction targets are numbered after the active
+     * segment. Any other damaged record is reported and nothing is cut, so recovery never drops a record
+     * that could still be read.
+     * @param from where to start; the segment was indexed up to here
+     * @throws IOException if a record other than a torn last one is damaged
+     */
+    private void scan(Segment segment, long from) throws IOException {
+        long offset = from;
+        while (offset < segment.size) {
+            Record record;
+            try {
+                record = readRecord(segment, offset);
+            } catch (IOException damaged) {
+                if (!isTornTail(segment, offset)) {
+                    throw new IOException("cannot open the bracket store: " + damaged.getMessage(), damaged);
+                }
+                segment.channel.truncate(offset);
+                segment.size = offset;
+                return;
+            }
+            Location current = index.get(record.name);
+            if (current == null || current.sequence < record.sequence) {
+                String password = codec.decode(record.payload).getPassword();
+                index(record.name, new Location(segment.id, offset, record.length, record.sequence, password));
+            }
+            nextSequence = Math.max(nextSequence, record.sequence + 1);
+            offset += record.length;
+        }
+    }
+
+    /**
+     * @return true if the damaged record at offset is the last thing in the segment: no readable record,
+     * one whose fields add up to its length and whose checksum matches, starts anywhere after it.
+     * Its own length is not trusted, a corrupted length can point past the end of the file.
+     */
+    private static boolean isTornTail(Segment segment, long offset) throws IOException {
+        long remaining = segment.size - offset;
+        if (remaining > Integer.MAX_VALUE) {
+            return false;
+        }
+        ByteBuffer rest = ByteBuffer.allocate((int) remaining);
+        readFully(segment.channel, rest, offset);
+        CRC32 crc = new CRC32();
+        for (int at = 1; at + 22 <= rest.limit(); at++) {
+            if (isRecordHeader(rest, at)) {
+                int length = rest.getInt(at);
+                crc.reset();
+                crc.update(rest.array(), at + 4, length - 8);
+                if (rest.getInt(at + length - 4) == (int) crc.getValue()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the bytes at offset at could start a record as encodeRecord writes it: the length,
+     * name length and payload length agree and the record fits in the buffer
+     */
+    private static boolean isRecordHeader(ByteBuffer buffer, int at) {
+        int length = buffer.getInt(at);
+        if (length < 22 || at + (long) length > buffer.limit()) {
+            return false;
+        }
+        int nameLength = buffer.getShort(at + 12) & 0xFFFF;
+        if (nameLength > length - 22) {
+            return false;
+        }
+        int payloadLength = buffer.getInt(at + 14 + nameLength);
+        return payloadLength >= 0 && 22L + nameLength + payloadLength == length;
+    }
+
+    /**
+     * @return how far each segment was indexed, or null if the index is missing or does not match the segments
+     */
+    private Map<Integer, Long> loadIndex() {
+        Path file = directory.resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION
+                    || ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt() != (int) crc.getValue()) {
+                return null;
+            }
+            nextSequence = in.readLong();
+            Map<Integer, Long> indexed = new HashMap<>();
+            int segmentCount = in.readInt();
+            for (int i = 0; i < segmentCount; i++) {
+                int id = in.readInt();
+                long length = in.readLong();
+                Segment segment = segments.get(id);
+                if (segment == null || segment.size < length) {
+                    return null;
+                }
+                indexed.put(id, length);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                Location location = new Location(in.readInt(), in.readLong(), in.readInt(), in.readLong(),
+                        in.readBoolean() ? in.readUTF() : null);
+                if (!segments.containsKey(location.segment)) {
+                    index.clear();
+                    return null;
+                }
+                index(name, location);
+            }
+            return indexed;
+        } catch (IOException | RuntimeException e) {
+            index.clear();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file and moves it over the old one
+     */
+    private void saveIndex() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(INDEX_VERSION);
+        out.writeLong(nextSequence);
+        out.writeInt(segments.size());
+        for (Segment segment : segments.values()) {
+            out.writeInt(segment.id);
+            out.writeLong(segment.size);
+        }
+        out.writeInt(index.size());
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(location.segment);
+            out.writeLong(location.offset);
+            out.writeInt(location.length);
+            out.writeLong(location.sequence);
+            out.writeBoolean(location.password != null);
+            if (location.password != null) {
+                out.writeUTF(location.password);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        //on disk before the rename, or a crash could leave the new name on a file with nothing in it
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer encodeRecord(long sequence, String name, byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + name.length() + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);                        //length, filled in below
+        out.writeLong(sequence);
+        out.writeUTF(name);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt(0);                        //crc, filled in below
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.limit() - 8);
+        record.putInt(0, record.limit());
+        record.putInt(record.limit() - 4, (int) crc.getValue());
+        return record;
+    }
+
+    private static Record readRecord(Segment segment, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(segment.channel, header, offset);
+        int length = header.getInt(0);
+        if (length < 22 || offset + length > segment.size) {
+            throw new IOException("damaged record at " + offset + " in segment " + segment.id);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        readFully(segment.channel, bytes, offset);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 4, length - 8);
+        if (bytes.getInt(length - 4) != (int) crc.getValue()) {
+            throw new IOException("checksum mismatch at " + offset + " in segment " + segment.id);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array(), 4, length - 8));
+        long sequence = in.readLong();
+        String name = in.readUTF();
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new Record(sequence, name, payload, length);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("unexpected end of segment at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("store is closed");
+        }
+    }
+
+    /**
+     * Where a player's latest record is, plus the password saved with it so logins need no read
+     */
+    private static final class Location {
+        final int segment;
+        final long offset;
+        final int length;
+        final long sequence;
+        final String password;
+
+        Location(int segment, long offset, int length, long sequence, String password) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.sequence = sequence;
+            this.password = password;
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final FileChannel channel;
+        long size;
+        long liveBytes;
+
+        Segment(int id, FileChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+    }
+
+    private static final class Record {
+        final long sequence;
+        final String name;
+        final byte[] payload;
+        final int length;
+
+        Record(long sequence, String name, byte[] payload, int length) {
+            this.sequence = sequence;
+            this.name = name;
+            this.payload = payload;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+
+/**
+ * Compact form of a Bracket: the 63 "which child won" choices packed into one long,
+ * plus a reference to the TournamentField every bracket of the tournament shares.
+ * Bit i is set when the winner of game slot i came from the right child (2i+2) and clear
+ * when it came from the left child (2i+1), so bit positions line up with Bracket slot indexes.
+ * Large pools should keep just the long values in a long[] next to one field,
+ * 8 bytes per entry instead of a 127 element ArrayList of names.
+ */
+public final class CompactBracket {
+
+    /**
+     * bits 0-62, one per game slot
+     */
+    public static final long ALL_GAMES = (1L << TournamentField.GAMES) - 1;
+
+    private final TournamentField field;
+    private final long picks;
+
+    /**
+     * @param field the shared starting field
+     * @param picks encoded choices, see encode
+     */
+    public CompactBracket(TournamentField field, long picks) {
+        if ((picks & ~ALL_GAMES) != 0) {
+            throw new IllegalArgumentException("picks use bit 63");
+        }
+        this.field = field;
+        this.picks = picks;
+    }
+
+    /**
+     * @param bracket a complete bracket whose first round matches the field
+     * @param field the shared starting field
+     * @return the compact form of the bracket
+     */
+    public static CompactBracket of(Bracket bracket, TournamentField field) {
+        return new CompactBracket(field, encode(bracket, field));
+    }
+
+    /**
+     * Encodes a complete bracket
+     * @param bracket a bracket with every slot filled
+     * @param field the starting field the bracket was created from
+     * @return the 63 choices
+     * @throws IllegalArgumentException if a slot is empty or does not hold one of its children's teams
+     */
+    public static long encode(Bracket bracket, TournamentField field) {
+        long picks = encodePartial(bracket, field);
+        long decided = decidedMask(bracket);
+        if (decided != ALL_GAMES) {
+            throw new IllegalArgumentException("slot " + Long.numberOfTrailingZeros(~decided) + " has not been picked");
+        }
+        return picks;
+    }
+
+    /**
+     * Encodes the filled slots of a possibly incomplete bracket, such as the master during the tournament.
+     * Empty slots are encoded as 0, use decidedMask to tell them apart.
+     * @param bracket the bracket
+     * @param field the starting field the bracket was created from
+     * @return the choices made so far
+     * @throws IllegalArgumentException if a filled slot does not hold one of its children's teams
+     */
+    public static long encodePartial(Bracket bracket, TournamentField field) {
+        ArrayList<String> slots = bracket.getBracket();
+        for (int id = 0; id < TournamentField.TEAMS; id++) {
+            if (!slots.get(TournamentField.GAMES + id).equals(field.name(id))) {
+                throw new IllegalArgumentException("slot " + (TournamentField.GAMES + id) + " is not " + field.name(id));
+            }
+        }
+        long picks = 0;
+        for (int i = 0; i < TournamentField.GAMES; i++) {
+            String winner = slots.get(i);
+            if (winner.equals("")) {
+                continue;
+            }
+            if (winner.equals(slots.get(2 * i + 2))) {
+                picks |= 1L << i;
+            } else if (!winner.equals(slots.get(2 * i + 1))) {
+                throw new IllegalArgumentException(winner + " in slot " + i + " did not play in that game");
+            }
+        }
+        return picks;
+    }
+
+    /**
+     * Encodes a tree of team ids, such as one played by SimulationCore
+     * @param tree 127 long, -1 for games not played
+     * @return the choices for the games that were played
+     */
+    public static long encode(int[] tree) {
+        long picks = 0;
+        for (int i = 0; i < TournamentField.GAMES; i++) {
+            if (tree[i] >= 0 && tree[i] == tree[2 * i + 2]) {
+                picks |= 1L << i;
+            }
+        }
+        return picks;
+    }
+
+    /**
+     * @param bracket the bracket
+     * @return a mask with bit i set for every filled game slot i
+     */
+    public static long decidedMask(Bracket bracket) {
+        ArrayList<String> slots = bracket.getBracket();
+        long decided = 0;
+        for (int i = 0; i < TournamentField.GAMES; i++) {
+            if (!slots.get(i).equals("")) {
+                decided |= 1L << i;
+            }
+        }
+        return decided;
+    }
+
+    /**
+     * Expands encoded choices into team ids for all 127 slots
+     * @param picks encoded choices
+     * @param tree 127 long, receives the team id of every slot
+     * @return tree
+     */
+    public static int[] decode(long picks, int[] tree) {
+        for (int id = 0; id < TournamentField.TEAMS; id++) {
+            tree[TournamentField.GAMES + id] = id;
+        }
+        for (int i = TournamentField.GAMES - 1; i >= 0; i--) {
+            tree[i] = tree[2 * i + 1 + (int) ((picks >>> i) & 1)];
+        }
+        return tree;
+    }
+
+    /**
+     * @param picks encoded choices
+     * @param field the starting field
+     * @return the same 127 slot view that Bracket.getBracket returns
+     */
+    public static ArrayList<String> toList(long picks, TournamentField field) {
+        int[] tree = decode(picks, new int[TournamentField.SLOTS]);
+        ArrayList<String> slots = new ArrayList<>(TournamentField.SLOTS);
+        for (int team : tree) {
+            slots.add(field.name(team));
+        }
+        return slots;
+    }
+
+    /**
+     * @return the encoded choices
+     */
+    public long getPicks() {
+        return picks;
+    }
+
+    /**
+     * @return the shared starting field
+     */
+    public TournamentField getField() {
+        return field;
+    }
+
+    /**
+     * Follows the choices from a slot down to the first round
+     * @param slot any slot, 0-126
+     * @return the id of the team in that slot
+     */
+    public int winner(int slot) {
+        while (slot < TournamentField.GAMES) {
+            slot = 2 * slot + 1 + (int) ((picks >>> slot) & 1);
+        }
+        return slot - TournamentField.GAMES;
+    }
+
+    /**
+     * @return the same 127 slot view that Bracket.getBracket returns
+     */
+    public ArrayList<String> getBracket() {
+        return toList(picks, field);
+    }
+
+    /**
+     * @return a new Bracket holding these picks, without a player name or password
+     */
+    public Bracket toBracket() {
+        return new Bracket(getBracket());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CompactBracket)) {
+            return false;
+        }
+        CompactBracket other = (CompactBracket) o;
+        return picks == other.picks && field.equals(other.field);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(picks) * 31 + field.hashCode();
+    }
+}
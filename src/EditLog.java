@@ -0,0 +1,197 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the picks a player makes before finalizing.
+ * Each log starts with a checkpoint, the whole bracket encoded with a BracketCodec, followed by one
+ * two byte record (operation, slot) per moveTeamUp, removeAbove or resetSubtree call, written as the
+ * edit happens. A click costs a two byte write instead of saving the whole bracket, and every
+ * CHECKPOINT_EDITS edits the log is replaced by a fresh checkpoint so replay stays short.
+ * recover rebuilds the bracket from the checkpoint and replays the edits after it; a record cut short
+ * by a crash ends the replay. Edits are written to the operating system as they are made, so they
+ * survive the program crashing; checkpoints are also synced to disk.
+ * <p>
+ * Layout: int MAGIC, int VERSION, int checkpoint length, checkpoint, int CRC32 of the checkpoint,
+ * then the edit records.
+ */
+public final class EditLog implements Closeable, Bracket.EditListener {
+
+    /**
+     * edits between checkpoints
+     */
+    public static final int CHECKPOINT_EDITS = 256;
+
+    private static final int MAGIC = 0x4D4D574C;           //"MMWL"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "edits-";
+    private static final String SUFFIX = ".wal";
+
+    private final Path file;
+    private final BracketCodec codec;
+    private final Bracket bracket;
+    private final ByteBuffer record = ByteBuffer.allocate(2);
+    private FileChannel channel;
+    private int edits;
+    private IOException failure;
+
+    private EditLog(Path file, BracketCodec codec, Bracket bracket) {
+        this.file = file;
+        this.codec = codec;
+        this.bracket = bracket;
+    }
+
+    /**
+     * Starts logging a player's edits, replacing any earlier log of that player with a checkpoint
+     * of the bracket as it is now. Call recover first to keep the edits of an earlier session.
+     * @param directory where the logs are kept
+     * @param codec encodes the checkpoints
+     * @param bracket the player's bracket, with a player name
+     * @return the log, listening to the bracket
+     */
+    public static EditLog open(Path directory, BracketCodec codec, Bracket bracket) throws IOException {
+        Files.createDirectories(directory);
+        EditLog log = new EditLog(fileOf(directory, bracket.getPlayerName()), codec, bracket);
+        log.checkpoint();
+        bracket.setEditListener(log);
+        return log;
+    }
+
+    /**
+     * Replays a player's log, if there is one, into their bracket
+     * @param directory where the logs are kept
+     * @param codec decodes the checkpoints
+     * @param bracket the player's bracket, overwritten with the logged state
+     * @return true if a log was found and replayed
+     * @throws IOException if the log cannot be read or its checkpoint is damaged
+     */
+    public static boolean recover(Path directory, BracketCodec codec, Bracket bracket) throws IOException {
+        Path file = fileOf(directory, bracket.getPlayerName());
+        if (!Files.exists(file)) {
+            return false;
+        }
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (log.remaining() < 12 || log.getInt() != MAGIC || log.getInt() != VERSION) {
+            throw new IOException(file + " is not an edit log");
+        }
+        int length = log.getInt();
+        if (length < 0 || log.remaining() < length + 4) {
+            throw new IOException(file + " has a damaged checkpoint");
+        }
+        byte[] checkpoint = new byte[length];
+        log.get(checkpoint);
+        CRC32 crc = new CRC32();
+        crc.update(checkpoint);
+        if (log.getInt() != (int) crc.getValue()) {
+            throw new IOException(file + " has a damaged checkpoint");
+        }
+        Bracket logged = codec.decode(checkpoint);
+        for (int i = 0; i < TournamentField.SLOTS; i++) {
+            bracket.getBracket().set(i, logged.getBracket().get(i));
+        }
+        while (log.remaining() >= 2) {
+            int op = log.get();
+            int slot = log.get();
+            if (op < MOVE_TEAM_UP || op > RESET_SUBTREE || slot < 0 || slot >= TournamentField.SLOTS) {
+                break;
+            }
+            bracket.applyEdit(op, slot);
+        }
+        return true;
+    }
+
+    /**
+     * Appends one edit, checkpointing every CHECKPOINT_EDITS edits.
+     * A failed write stops the logging and is reported by close.
+     */
+    @Override
+    public void edited(int op, int slot) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            if (++edits >= CHECKPOINT_EDITS) {
+                checkpoint();
+                return;
+            }
+            record.clear();
+            record.put((byte) op).put((byte) slot).flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Stops logging and deletes the log, once the bracket has been saved for good
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Stops logging and keeps the log, so the edits can be recovered next session
+     * @throws IOException if an edit could not be logged
+     */
+    @Override
+    public void close() throws IOException {
+        bracket.setEditListener(null);
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Replaces the log with the bracket's current state
+     */
+    private void checkpoint() throws IOException {
+        byte[] encoded = codec.encode(bracket);
+        CRC32 crc = new CRC32();
+        crc.update(encoded);
+        ByteBuffer header = ByteBuffer.allocate(16 + encoded.length);
+        header.putInt(MAGIC).putInt(VERSION).putInt(encoded.length).put(encoded).putInt((int) crc.getValue()).flip();
+
+        if (channel != null) {
+            channel.close();
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        edits = 0;
+    }
+
+    /**
+     * @return the log file of a player, named by the hex of the name so any name makes a valid file name
+     */
+    private static Path fileOf(Path directory, String playerName) {
+        if (playerName == null) {
+            throw new IllegalArgumentException("bracket has no player name");
+        }
+        StringBuilder name = new StringBuilder(PREFIX);
+        for (byte b : playerName.getBytes(StandardCharsets.UTF_8)) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return directory.resolve(name.append(SUFFIX).toString());
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exact endgame analysis for small numbers of open games.
+ * With 15 or fewer games left every outcome (at most 2^15) can be checked instead of sampled.
+ * Each open game is one bit of a scenario number and the scenarios are walked in Gray code order,
+ * so each step flips exactly one result. A flip changes the winner of that slot and of every slot
+ * above it that the flipped team had reached, and the PickIndex names the entries whose score moves,
+ * so a step only touches those entries before the finishing positions are counted.
+ * The scenario space is split into contiguous Gray code ranges, one per worker.
+ */
+public class EndgameEnumerator {
+
+    /**
+     * most open games that can be enumerated
+     */
+    public static final int MAX_OPEN_GAMES = 15;
+
+    private final long[] entries;
+    private final PickIndex index;
+    private final TournamentField field;
+    private final int workers;
+
+    /**
+     * Creates an enumerator using every available core
+     * @param field the starting field the entries were encoded against
+     * @param entries encoded picks of complete brackets
+     */
+    public EndgameEnumerator(TournamentField field, long[] entries) {
+        this(field, entries, new PickIndex(entries), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an enumerator for a season of a SeasonCatalog, using every available core
+     * @param season the season the entries were made for, loaded if it is not cached
+     * @param entries encoded picks of complete brackets
+     */
+    public EndgameEnumerator(SeasonCatalog.Season season, long[] entries) throws IOException {
+        this(season.getField(), entries);
+    }
+
+    /**
+     * @param field the starting field the entries were encoded against
+     * @param entries encoded picks of complete brackets
+     * @param index index of the same entries
+     * @param workers number of threads to split the scenarios across
+     */
+    public EndgameEnumerator(TournamentField field, long[] entries, PickIndex index, int workers) {
+        if (index.size() != entries.length) {
+            throw new IllegalArgumentException("index does not match the entries");
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be positive");
+        }
+        this.field = field;
+        this.entries = entries;
+        this.index = index;
+        this.workers = workers;
+    }
+
+    /**
+     * @param master the master bracket with at most MAX_OPEN_GAMES slots left empty
+     * @param positions how many finishing positions to count, from first place down
+     * @return how often each entry finishes in each position over all scenarios
+     */
+    public Result enumerate(Bracket master, int positions) throws InterruptedException {
+        int[] tree = new int[TournamentField.SLOTS];
+        Arrays.fill(tree, -1);
+        for (int id = 0; id < TournamentField.TEAMS; id++) {
+            tree[TournamentField.GAMES + id] = id;
+        }
+        for (int i = 0; i < TournamentField.GAMES; i++) {
+            String winner = master.getBracket().get(i);
+            if (!winner.equals("")) {
+                tree[i] = field.idOf(winner);
+                if (tree[i] < 0) {
+                    throw new IllegalArgumentException(winner + " in slot " + i + " is not in the field");
+                }
+            }
+        }
+        return enumerate(tree, positions);
+    }
+
+    /**
+     * @param played team ids of the games played so far, -1 for open games, laid out like SimulationCore.newTree
+     * @param positions how many finishing positions to count, from first place down
+     * @return how often each entry finishes in each position over all scenarios
+     */
+    public Result enumerate(int[] played, int positions) throws InterruptedException {
+        if (positions < 1) {
+            throw new IllegalArgumentException("positions must be positive");
+        }
+        //open games, bottom-up so a scenario's tree can be filled in one pass
+        int[] open = new int[MAX_OPEN_GAMES];
+        int openCount = 0;
+        for (int i = TournamentField.GAMES - 1; i >= 0; i--) {
+            if (played[i] < 0) {
+                if (openCount == MAX_OPEN_GAMES) {
+                    throw new IllegalArgumentException("more than " + MAX_OPEN_GAMES + " games are still open");
+                }
+                open[openCount++] = i;
+            } else if (played[2 * i + 1] < 0 || played[2 * i + 2] < 0) {
+                throw new IllegalArgumentException("slot " + i + " is filled but one of the games below it is not");
+            }
+        }
+        open = Arrays.copyOf(open, openCount);
+
+        int scenarios = 1 << openCount;
+        int threads = Math.min(workers, scenarios);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<int[]>> results = new ArrayList<>();
+        try {
+            for (int w = 0; w < threads; w++) {
+                int from = (int) ((long) scenarios * w / threads);
+                int to = (int) ((long) scenarios * (w + 1) / threads);
+                results.add(pool.submit(new Worker(played, open, positions, from, to)));
+            }
+            long[] counts = new long[entries.length * positions];
+            for (Future<int[]> result : results) {
+                int[] partial = result.get();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += partial[i];
+                }
+            }
+            return new Result(counts, positions, scenarios);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Enumeration worker failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Walks one contiguous range of Gray code scenarios
+     */
+    private class Worker implements Callable<int[]> {
+        private final int[] tree;
+        private final int[] open;
+        private final int positions;
+        private final int from;
+        private final int to;
+        private final int[] scores = new int[entries.length];
+
+        Worker(int[] played, int[] open, int positions, int from, int to) {
+            this.tree = played.clone();
+            this.open = open;
+            this.positions = positions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int[] call() {
+            int[] counts = new int[entries.length * positions];
+            int[] higher = new int[ScoringKernel.MAX_SCORE + 2];
+
+            //first scenario of the range is filled in and scored from scratch
+            int gray = from ^ (from >>> 1);
+            for (int j = 0; j < open.length; j++) {
+                int slot = open[j];
+                tree[slot] = tree[2 * slot + 1 + ((gray >>> j) & 1)];
+            }
+            ScoringKernel.Results results = new ScoringKernel.Results(CompactBracket.encode(tree), CompactBracket.ALL_GAMES);
+            for (int e = 0; e < entries.length; e++) {
+                scores[e] = ScoringKernel.score(entries[e], results);
+            }
+            tally(counts, higher);
+
+            for (int n = from + 1; n < to; n++) {
+                if ((n & 0xFF) == 0 && Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                flip(open[Integer.numberOfTrailingZeros(n)]);
+                tally(counts, higher);
+            }
+            return counts;
+        }
+
+        /**
+         * Gives a game to the other team and carries the change up through every slot the old winner had reached
+         */
+        private void flip(int slot) {
+            int old = tree[slot];
+            int replacement = tree[2 * slot + 1] == old ? tree[2 * slot + 2] : tree[2 * slot + 1];
+            while (true) {
+                tree[slot] = replacement;
+                int points = ScoringKernel.pointsForSlot(slot);
+                addPoints(slot, old, -points);
+                addPoints(slot, replacement, points);
+                if (slot == 0) {
+                    break;
+                }
+                slot = (slot - 1) / 2;
+                if (tree[slot] != old) {
+                    break;
+                }
+            }
+        }
+
+        private void addPoints(int slot, int team, int points) {
+            int[] members = index.entries(slot);
+            int end = index.to(slot, team);
+            for (int i = index.from(slot, team); i < end; i++) {
+                scores[members[i]] += points;
+            }
+        }
+
+        /**
+         * Counts each entry's finishing position in the current scenario, ties sharing the better position
+         */
+        private void tally(int[] counts, int[] higher) {
+            Arrays.fill(higher, 0);
+            for (int score : scores) {
+                higher[score]++;
+            }
+            //higher[s] becomes the number of entries scoring more than s
+            int above = 0;
+            for (int s = ScoringKernel.MAX_SCORE; s >= 0; s--) {
+                int atScore = higher[s];
+                higher[s] = above;
+                above += atScore;
+            }
+            for (int e = 0; e < scores.length; e++) {
+                int position = higher[scores[e]];
+                if (position < positions) {
+                    counts[e * positions + position]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finishing position counts of every entry over all scenarios
+     */
+    public static final class Result {
+        private final long[] counts;
+        private final int positions;
+        private final int scenarios;
+
+        Result(long[] counts, int positions, int scenarios) {
+            this.counts = counts;
+            this.positions = positions;
+            this.scenarios = scenarios;
+        }
+
+        /**
+         * @param entry entry number
+         * @param position finishing position, 1 for first place, up to getPositions()
+         * @return the number of scenarios in which the entry finishes in that position
+         */
+        public long getCount(int entry, int position) {
+            if (position < 1 || position > positions) {
+                throw new IllegalArgumentException("only positions 1 to " + positions + " were counted");
+            }
+            return counts[entry * positions + position - 1];
+        }
+
+        /**
+         * @param entry entry number
+         * @return the number of scenarios in which the entry finishes below the counted positions
+         */
+        public long getCountBelow(int entry) {
+            long counted = 0;
+            for (int p = 0; p < positions; p++) {
+                counted += counts[entry * positions + p];
+            }
+            return scenarios - counted;
+        }
+
+        /**
+         * @return how many finishing positions were counted
+         */
+        public int getPositions() {
+            return positions;
+        }
+
+        /**
+         * @return the number of scenarios enumerated
+         */
+        public int getScenarios() {
+            return scenarios;
+        }
+    }
+}
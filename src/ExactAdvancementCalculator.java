@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Analytic counterpart of MonteCarloSimulator.
+ * The bracket is a binary tree (children of slot i at 2i+1 and 2i+2), so the chance of every team
+ * reaching every slot follows exactly from the pairwise win probabilities in one bottom-up pass:
+ * a team reaches a slot if it reaches its child slot and beats whoever comes out of the other child.
+ * No sampling is involved, so a full table takes microseconds and is the same on every call.
+ */
+public class ExactAdvancementCalculator {
+
+    private final SimulationCore core;
+
+    /**
+     * @param core supplies the field and the pairwise win probabilities
+     */
+    public ExactAdvancementCalculator(SimulationCore core) {
+        this.core = core;
+    }
+
+    /**
+     * @param season a season of a SeasonCatalog, loaded if it is not cached
+     */
+    public ExactAdvancementCalculator(SeasonCatalog.Season season) throws IOException {
+        this(season.getCore());
+    }
+
+    /**
+     * @return advancement probabilities before any game has been played
+     */
+    public AdvancementTable compute() {
+        int[] forced = new int[TournamentField.GAMES];
+        Arrays.fill(forced, -1);
+        return compute(forced);
+    }
+
+    /**
+     * Treats every filled game slot of the bracket as a result that has already happened
+     * @param master the master bracket, possibly partially filled
+     * @return advancement probabilities given the games played so far
+     */
+    public AdvancementTable compute(Bracket master) {
+        ArrayList<String> slots = master.getBracket();
+        TournamentField field = core.getField();
+        int[] forced = new int[TournamentField.GAMES];
+        for (int i = 0; i < TournamentField.GAMES; i++) {
+            String winner = slots.get(i);
+            if (winner.equals("")) {
+                forced[i] = -1;
+            } else {
+                forced[i] = field.idOf(winner);
+                if (forced[i] < 0) {
+                    throw new IllegalArgumentException(winner + " in slot " + i + " is not in the field");
+                }
+            }
+        }
+        return compute(forced);
+    }
+
+    /**
+     * @param forced for each game slot 0-62 the id of the team that won it, or -1 if it has not been played
+     * @return advancement probabilities given the forced results
+     */
+    public AdvancementTable compute(int[] forced) {
+        final int teams = TournamentField.TEAMS;
+        //reach[slot * 64 + team] = chance that team ends up in slot
+        double[] reach = new double[TournamentField.SLOTS * teams];
+        for (int id = 0; id < teams; id++) {
+            reach[(TournamentField.GAMES + id) * teams + id] = 1;
+        }
+        double[] probabilities = new double[teams * AdvancementTable.ROUNDS];
+
+        for (int slot = TournamentField.GAMES - 1; slot >= 0; slot--) {
+            int size = TournamentField.teamsBelow(slot);
+            int first = TournamentField.firstTeamBelow(slot);
+            int half = size / 2;                    //teams below each child
+            int left = 2 * slot + 1;
+            int right = 2 * slot + 2;
+            int round = AdvancementTable.roundOfSlot(slot);
+
+            if (slot < forced.length && forced[slot] >= 0) {
+                int winner = forced[slot];
+                if (winner < first || winner >= first + size) {
+                    throw new IllegalArgumentException(core.getField().name(winner) + " cannot win game " + slot);
+                }
+                reach[slot * teams + winner] = 1;
+            } else {
+                advance(reach, slot, left, right, first, first + half, half);
+                advance(reach, slot, right, left, first + half, first, half);
+            }
+            for (int t = first; t < first + size; t++) {
+                probabilities[t * AdvancementTable.ROUNDS + round] = reach[slot * teams + t];
+            }
+        }
+        return new AdvancementTable(core.getField().names(), probabilities);
+    }
+
+    /**
+     * Fills reach[slot] for the teams coming from one child:
+     * reach the child, then beat each possible opponent weighted by the chance it reaches the other child
+     */
+    private void advance(double[] reach, int slot, int child, int other, int from, int opponentsFrom, int count) {
+        final int teams = TournamentField.TEAMS;
+        for (int t = from; t < from + count; t++) {
+            double toChild = reach[child * teams + t];
+            if (toChild == 0) {
+                continue;
+            }
+            double win = 0;
+            for (int u = opponentsFrom; u < opponentsFrom + count; u++) {
+                win += reach[other * teams + u] * core.winProbability(t, u);
+            }
+            reach[slot * teams + t] = toChild * win;
+        }
+    }
+}
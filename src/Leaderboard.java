@@ -0,0 +1,359 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Ranked index of player scores.
+ * Players are kept in a treap ordered by score, highest first, and by name between equal scores.
+ * Every node counts the nodes below it, so the position of a player and the player at a position are
+ * found in one walk from the root. A score update is a remove and an insert, O(log n) expected, as are
+ * rank and position queries; topK walks the first k players in order.
+ * Ranks follow competition ranking: players with the same score share a rank and the next score ranks
+ * after all of them (1, 2, 2, 4). Not thread safe; the scoreboard uses it from the FX thread.
+ */
+public class Leaderboard {
+
+    private final HashMap<String, Node> nodes = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    /**
+     * Adds a player or changes their score
+     * @param name the player's name
+     * @param score their new score
+     * @return true if the player was not on the board before
+     */
+    public boolean update(String name, int score) {
+        Node node = nodes.get(name);
+        boolean added = node == null;
+        if (added) {
+            node = new Node(name, score, random.nextInt());
+            nodes.put(name, node);
+        } else if (node.score == score) {
+            return false;
+        } else {
+            root = remove(root, node);
+            node.score = score;
+            node.left = node.right = null;
+            node.size = 1;
+        }
+        root = insert(root, node);
+        return added;
+    }
+
+    /**
+     * @param name a player's name
+     * @return true if the player was on the board
+     */
+    public boolean remove(String name) {
+        Node node = nodes.remove(name);
+        if (node == null) {
+            return false;
+        }
+        root = remove(root, node);
+        return true;
+    }
+
+    /**
+     * Empties the board
+     */
+    public void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    /**
+     * @return the number of players
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @param name a player's name
+     * @return true if the player is on the board
+     */
+    public boolean contains(String name) {
+        return nodes.containsKey(name);
+    }
+
+    /**
+     * @param name a player's name
+     * @return the player's score
+     * @throws IllegalArgumentException if the player is not on the board
+     */
+    public int score(String name) {
+        return node(name).score;
+    }
+
+    /**
+     * @param name a player's name
+     * @return the player's rank, 1 for the best score, shared between equal scores
+     * @throws IllegalArgumentException if the player is not on the board
+     */
+    public int rank(String name) {
+        return countAbove(node(name).score) + 1;
+    }
+
+    /**
+     * @param score a score
+     * @return the rank a player with this score would have
+     */
+    public int rankOf(int score) {
+        return countAbove(score) + 1;
+    }
+
+    /**
+     * @param name a player's name
+     * @return the player's position in board order, 0 for the first; unlike the rank no two players share one
+     * @throws IllegalArgumentException if the player is not on the board
+     */
+    public int position(String name) {
+        Node target = node(name);
+        int position = 0;
+        Node n = root;
+        while (n != target) {
+            if (before(target, n)) {
+                n = n.left;
+            } else {
+                position += size(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return position + size(n.left);
+    }
+
+    /**
+     * @param position a position in board order, 0 for the first
+     * @return the player at that position
+     * @throws IndexOutOfBoundsException if there is no such position
+     */
+    public Entry get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("position " + position + " of " + size());
+        }
+        Node n = root;
+        int at = position;
+        while (true) {
+            int left = size(n.left);
+            if (at < left) {
+                n = n.left;
+            } else if (at == left) {
+                return new Entry(n.name, n.score, countAbove(n.score) + 1);
+            } else {
+                at -= left + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * @param k how many players
+     * @return the first k players in board order, fewer if the board is smaller
+     */
+    public List<Entry> topK(int k) {
+        return range(0, k);
+    }
+
+    /**
+     * @param from position of the first player, 0 for the first
+     * @param count how many players
+     * @return the players from position from on in board order, fewer if the board ends first
+     */
+    public List<Entry> range(int from, int count) {
+        if (from < 0 || count < 0) {
+            throw new IndexOutOfBoundsException("range " + from + " + " + count);
+        }
+        List<Entry> out = new ArrayList<>(Math.max(0, Math.min(count, size() - from)));
+        collect(root, from, out, count);
+        //ranks from the order itself: a player ranks after everyone listed before them with a higher score
+        for (int i = 0; i < out.size(); i++) {
+            Entry e = out.get(i);
+            int rank = i > 0 && out.get(i - 1).score == e.score ? out.get(i - 1).rank
+                    : i > 0 ? from + i + 1 : countAbove(e.score) + 1;
+            out.set(i, new Entry(e.name, e.score, rank));
+        }
+        return out;
+    }
+
+    /**
+     * In order walk adding up to count nodes, skipping the first skip; subtrees entirely before
+     * the range are stepped over by their size
+     */
+    private static void collect(Node n, int skip, List<Entry> out, int count) {
+        if (n == null || out.size() >= count) {
+            return;
+        }
+        int left = size(n.left);
+        if (skip < left) {
+            collect(n.left, skip, out, count);
+        }
+        if (skip <= left && out.size() < count) {
+            out.add(new Entry(n.name, n.score, 0));
+        }
+        collect(n.right, Math.max(0, skip - left - 1), out, count);
+    }
+
+    private Node node(String name) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            throw new IllegalArgumentException(name + " is not on the leaderboard");
+        }
+        return node;
+    }
+
+    /**
+     * @return the number of players with a score higher than score
+     */
+    private int countAbove(int score) {
+        int count = 0;
+        Node n = root;
+        while (n != null) {
+            if (n.score > score) {
+                count += size(n.left) + 1;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if a comes before b in board order
+     */
+    private static boolean before(Node a, Node b) {
+        return a.score != b.score ? a.score > b.score : a.name.compareTo(b.name) < 0;
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static Node update(Node n) {
+        n.size = size(n.left) + size(n.right) + 1;
+        return n;
+    }
+
+    private static Node insert(Node n, Node node) {
+        if (n == null) {
+            return node;
+        }
+        if (node.priority > n.priority) {
+            Node[] parts = split(n, node);
+            node.left = parts[0];
+            node.right = parts[1];
+            return update(node);
+        }
+        if (before(node, n)) {
+            n.left = insert(n.left, node);
+        } else {
+            n.right = insert(n.right, node);
+        }
+        return update(n);
+    }
+
+    private static Node remove(Node n, Node node) {
+        if (n == node) {
+            return merge(n.left, n.right);
+        }
+        if (before(node, n)) {
+            n.left = remove(n.left, node);
+        } else {
+            n.right = remove(n.right, node);
+        }
+        return update(n);
+    }
+
+    /**
+     * @return the nodes before key and the nodes after it
+     */
+    private static Node[] split(Node n, Node key) {
+        if (n == null) {
+            return new Node[2];
+        }
+        if (before(n, key)) {
+            Node[] parts = split(n.right, key);
+            n.right = parts[0];
+            parts[0] = update(n);
+            return parts;
+        }
+        Node[] parts = split(n.left, key);
+        n.left = parts[1];
+        parts[1] = update(n);
+        return parts;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return update(a);
+        }
+        b.left = merge(a, b.left);
+        return update(b);
+    }
+
+    private static final class Node {
+        final String name;
+        int score;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(String name, int score, int priority) {
+            this.name = name;
+            this.score = score;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * A player's place on the board
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final int score;
+        private final int rank;
+
+        Entry(String name, int score, int rank) {
+            this.name = name;
+            this.score = score;
+            this.rank = rank;
+        }
+
+        /**
+         * @return the player's name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the player's score
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * @return the player's competition rank
+         */
+        public int getRank() {
+            return rank;
+        }
+
+        @Override
+        public String toString() {
+            return rank + ". " + name + " " + score;
+        }
+    }
+}
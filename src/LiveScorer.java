@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps pool scores up to date one game at a time.
+ * When a game result is recorded only the entries that picked the winner in that slot gain points,
+ * and the PickIndex hands exactly those entries over, so an update costs time proportional to the
+ * entries affected rather than the size of the pool. Recording a different winner for a slot
+ * that already has one takes the points back from the entries of the old winner first.
+ * <p>
+ * Alongside the scores it keeps the maximum each entry can still reach: its score plus the points of
+ * every unplayed slot whose picked team is still alive. When a result knocks teams out, only the
+ * entries that had those teams in later slots lose potential points, found through the same index.
+ * Taking a result back or changing it is rare, and recounts the maximums from the index instead.
+ * Not thread safe; results are expected to be recorded from one thread.
+ */
+public class LiveScorer {
+
+    private final TournamentField field;
+    private final PickIndex index;
+    private final int[] scores;
+    private final int[] results;
+    private final int[] maxPossible;
+    private final boolean[] alive;
+
+    /**
+     * @param field the starting field the entries were encoded against
+     * @param entries encoded picks of complete brackets
+     */
+    public LiveScorer(TournamentField field, long[] entries) {
+        this(field, new PickIndex(entries));
+    }
+
+    /**
+     * @param season the season the entries were made for, loaded if it is not cached
+     * @param entries encoded picks of complete brackets
+     */
+    public LiveScorer(SeasonCatalog.Season season, long[] entries) throws IOException {
+        this(season.getField(), entries);
+    }
+
+    /**
+     * @param field the starting field the entries were encoded against
+     * @param index index of the entries
+     */
+    public LiveScorer(TournamentField field, PickIndex index) {
+        this.field = field;
+        this.index = index;
+        scores = new int[index.size()];
+        results = new int[TournamentField.GAMES];
+        Arrays.fill(results, -1);
+        maxPossible = new int[index.size()];
+        Arrays.fill(maxPossible, ScoringKernel.MAX_SCORE);
+        alive = new boolean[TournamentField.TEAMS];
+        Arrays.fill(alive, true);
+    }
+
+    /**
+     * Records the winner of one game
+     * @param slot game slot, 0-62
+     * @param team id of the winner, or -1 to take the result back
+     * @return the number of entries whose score changed
+     * @throws IllegalArgumentException if there is no such slot or the team does not play below it
+     */
+    public int recordResult(int slot, int team) {
+        if (slot < 0 || slot >= TournamentField.GAMES) {
+            throw new IllegalArgumentException("No game slot " + slot);
+        }
+        int first = TournamentField.firstTeamBelow(slot);
+        if (team != -1 && (team < first || team >= first + TournamentField.teamsBelow(slot))) {
+            throw new IllegalArgumentException("Team " + team + " cannot win slot " + slot
+                    + ", only teams " + first + " to " + (first + TournamentField.teamsBelow(slot) - 1) + " play there");
+        }
+        int previous = results[slot];
+        if (previous == team) {
+            return 0;
+        }
+        int points = ScoringKernel.pointsForSlot(slot);
+        int changed = 0;
+        if (previous >= 0 || team < 0 || !alive[team]) {
+            //correction: fix the scores directly, then recount what is still achievable
+            if (previous >= 0) {
+                changed += addPoints(slot, previous, -points);
+            }
+            results[slot] = team;
+            if (team >= 0) {
+                changed += addPoints(slot, team, points);
+            }
+            recountMaxPossible();
+            return changed;
+        }
+        //every other team still alive below this slot is out, while the slot still counts as unplayed
+        for (int t = first; t < first + TournamentField.teamsBelow(slot); t++) {
+            if (t != team && alive[t]) {
+                eliminate(t);
+            }
+        }
+        results[slot] = team;
+        //the winner's pickers turn potential points into points, so their maximum does not move
+        return addPoints(slot, team, points);
+    }
+
+    /**
+     * Records the winner a master bracket has in a slot
+     * @param master the master bracket
+     * @param slot game slot, 0-62
+     * @return the number of entries whose score changed
+     */
+    public int recordResult(Bracket master, int slot) {
+        String winner = master.getBracket().get(slot);
+        if (winner.equals("")) {
+            return recordResult(slot, -1);
+        }
+        int team = field.idOf(winner);
+        if (team < 0) {
+            throw new IllegalArgumentException(winner + " in slot " + slot + " is not in the field");
+        }
+        return recordResult(slot, team);
+    }
+
+    /**
+     * Brings the scores in line with every game slot of the master, only touching slots that changed
+     * @param master the master bracket
+     * @return the number of score changes made
+     */
+    public int sync(Bracket master) {
+        ArrayList<String> slots = master.getBracket();
+        int changed = 0;
+        for (int slot = TournamentField.GAMES - 1; slot >= 0; slot--) {
+            String winner = slots.get(slot);
+            int team = winner.equals("") ? -1 : field.idOf(winner);
+            if (team != results[slot]) {
+                changed += recordResult(master, slot);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Marks a team as knocked out and takes the points of every unplayed slot it was picked in
+     * off the maximum of the entries that picked it there
+     */
+    private void eliminate(int team) {
+        alive[team] = false;
+        int slot = TournamentField.GAMES + team;
+        while (slot > 0) {
+            slot = (slot - 1) / 2;
+            if (results[slot] < 0) {
+                int points = ScoringKernel.pointsForSlot(slot);
+                int[] entries = index.entries(slot);
+                int to = index.to(slot, team);
+                for (int i = index.from(slot, team); i < to; i++) {
+                    maxPossible[entries[i]] -= points;
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out which teams are alive and every entry's maximum from the recorded results
+     */
+    private void recountMaxPossible() {
+        Arrays.fill(alive, true);
+        for (int slot = 0; slot < TournamentField.GAMES; slot++) {
+            if (results[slot] >= 0) {
+                int first = TournamentField.firstTeamBelow(slot);
+                for (int t = first; t < first + TournamentField.teamsBelow(slot); t++) {
+                    if (t != results[slot]) {
+                        alive[t] = false;
+                    }
+                }
+            }
+        }
+        System.arraycopy(scores, 0, maxPossible, 0, scores.length);
+        for (int slot = 0; slot < TournamentField.GAMES; slot++) {
+            if (results[slot] < 0) {
+                int points = ScoringKernel.pointsForSlot(slot);
+                int first = TournamentField.firstTeamBelow(slot);
+                for (int t = first; t < first + TournamentField.teamsBelow(slot); t++) {
+                    if (alive[t]) {
+                        int[] entries = index.entries(slot);
+                        int to = index.to(slot, t);
+                        for (int i = index.from(slot, t); i < to; i++) {
+                            maxPossible[entries[i]] += points;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int addPoints(int slot, int team, int points) {
+        int[] entries = index.entries(slot);
+        int to = index.to(slot, team);
+        for (int i = index.from(slot, team); i < to; i++) {
+            scores[entries[i]] += points;
+        }
+        return to - index.from(slot, team);
+    }
+
+    /**
+     * @param slot game slot, 0-62
+     * @return the id of the recorded winner, or -1 if the game has not been recorded
+     */
+    public int getResult(int slot) {
+        return results[slot];
+    }
+
+    /**
+     * @param entry entry number
+     * @return the entry's current score
+     */
+    public int getScore(int entry) {
+        return scores[entry];
+    }
+
+    /**
+     * @return a copy of all current scores, aligned with the entries
+     */
+    public int[] getScores() {
+        return scores.clone();
+    }
+
+    /**
+     * @param entry entry number
+     * @return the highest score the entry can still finish with
+     */
+    public int getMaxPossible(int entry) {
+        return maxPossible[entry];
+    }
+
+    /**
+     * @return a copy of every entry's highest reachable score, aligned with the entries
+     */
+    public int[] getMaxPossible() {
+        return maxPossible.clone();
+    }
+
+    /**
+     * @param team team id
+     * @return false once the team has lost a recorded game
+     */
+    public boolean isAlive(int team) {
+        return alive[team];
+    }
+
+    /**
+     * Entries not yet eliminated: their maximum reaches the current leader's score.
+     * An entry below that line is out of the running no matter how the remaining games go, but one above
+     * it may still be unable to finish first, since the picks that would raise it may also raise the
+     * leader. This is a cheap upper bound for pruning; EndgameEnumerator tells who can really win.
+     * @return the entry numbers, in ascending order
+     */
+    public int[] contenders() {
+        int leader = 0;
+        for (int score : scores) {
+            leader = Math.max(leader, score);
+        }
+        int count = 0;
+        for (int max : maxPossible) {
+            if (max >= leader) {
+                count++;
+            }
+        }
+        int[] contenders = new int[count];
+        for (int entry = 0, next = 0; next < count; entry++) {
+            if (maxPossible[entry] >= leader) {
+                contenders[next++] = entry;
+            }
+        }
+        return contenders;
+    }
+
+    /**
+     * @return the index the scorer reads from
+     */
+    public PickIndex getIndex() {
+        return index;
+    }
+}
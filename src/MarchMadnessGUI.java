@@ -1,17 +1,16 @@
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Objects;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.input.MouseButton;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
@@ -22,6 +21,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
@@ -31,10 +31,10 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
-import javafx.event.Event;
 
 /**
  *  MarchMadnessGUI
@@ -46,6 +46,17 @@ import javafx.event.Event;
  */
 public class MarchMadnessGUI extends Application {
 
+    private static final Logger LOG = Logger.getLogger(MarchMadnessGUI.class.getName());
+
+    //directory holding every saved bracket
+    private static final String STORE_DIRECTORY = "brackets";
+    //every saved bracket in one mapped file, scored in place by the simulation while it is current
+    private static final String POOL_FILE = "pool.mmbf";
+    //marker in STORE_DIRECTORY, present once every .ser file of older versions has been imported
+    private static final String LEGACY_IMPORTED = "legacy-imported";
+    //subdirectory of STORE_DIRECTORY holding the edit logs
+    private static final String EDIT_LOG_DIRECTORY = "edits";
+
     //all the gui elements
     private BorderPane root;
     private ToolBar toolBar;
@@ -72,29 +83,49 @@ public class MarchMadnessGUI extends Application {
     private Bracket selectedBracket;
     private Bracket simResultBracket;
     
-    private ArrayList<Bracket> playerBrackets;
-    private HashMap<String, Bracket> playerMap;
+    private PlayerDirectory players;
+    private BracketStore bracketStore;
+    private PersistenceQueue persistence;
+    //write-ahead log of the logged in player's picks until they finalize
+    private EditLog editLog;
     private ScoreBoardTable scoreBoard;
     private TableView table;
+    //built once and switched between players, see showBracketPane
     private BracketPane bracketPane;
+    //the simulated results, drawn on one canvas built once
+    private BracketCanvas resultsCanvas;
+    private ScrollPane resultsView;
     private GridPane loginPane;
     private TournamentInfo teamInfo;
+    private TournamentReloader reloader;
 
     @Override
     public void start(Stage primaryStage) {
+        long startNanos = System.nanoTime();
         //try to load all the files, if there is an error display it
         try{
-            teamInfo=new TournamentInfo();
+            //team data is watched and reloaded when the files change
+            reloader=new TournamentReloader();
+            reloader.addListener(snapshot -> Platform.runLater(() -> useTournamentData(snapshot)));
+            teamInfo=reloader.current().getInfo();
+            //hover text of every team, built once per version of the data
+            TeamRegistry.install(TeamRegistry.of(teamInfo));
             startingBracket= new Bracket(TournamentInfo.loadStartingBracket());
             simResultBracket=new Bracket(TournamentInfo.loadStartingBracket());
         } catch (IOException ex) {
             showError(new Exception("Can't find "+ex.getMessage(),ex),true);
         }
-        //deserialize stored brackets
-        playerBrackets = loadBrackets();
-        
-        playerMap = new HashMap<>();
-        addAllToMap();
+        //index the stored players, their brackets are read in the background
+        players = loadBrackets();
+        LOG.info(String.format("Indexed %d players in %.1f ms", players.size(), (System.nanoTime() - startNanos) / 1e6));
+        long preloadNanos = System.nanoTime();
+        players.preload().whenComplete((done, error) -> {
+            if (error != null) {
+                LOG.warning("Preloading brackets failed: " + error);
+            } else {
+                LOG.info(String.format("Preloaded %d brackets in %.1f ms", players.size(), (System.nanoTime() - preloadNanos) / 1e6));
+            }
+        });
 
         //the main layout container
         root = new BorderPane();
@@ -120,6 +151,7 @@ public class MarchMadnessGUI extends Application {
         primaryStage.getIcons().add(new Image("basketball_icon.png"));
         primaryStage.setIconified(true);
         primaryStage.show();
+        LOG.info(String.format("Login screen shown %.1f ms after start", (System.nanoTime() - startNanos) / 1e6));
     }
 
     /**
@@ -139,17 +171,69 @@ public class MarchMadnessGUI extends Application {
     private void simulate(){
         //cant login and restart prog after simulate
         simulate.setDisable(true);
-        
-       restart.setDisable(false);
-       scoreBoardButton.setDisable(false);
-       viewBracketButton.setDisable(false);
-       
-       teamInfo.simulate(simResultBracket);
-       for(Bracket b:playerBrackets){
-           scoreBoard.addPlayer(b,b.scoreBracket(simResultBracket));
-       }
-        
-        displayPane(table);
+        Node previous = root.getCenter();
+        //nobody logs in or out and nothing restarts under a running simulation
+        boolean logoutWasDisabled = logout.isDisable();
+        boolean restartWasDisabled = restart.isDisable();
+        logout.setDisable(true);
+        restart.setDisable(true);
+
+       //the games and the scoring run in the background, the window stays responsive meanwhile
+       SimulationTask task = new SimulationTask(teamInfo, startingBracket, players, bracketStore,
+               Paths.get(STORE_DIRECTORY, POOL_FILE));
+       task.setOnSucceeded(e -> {
+           SimulationTask.Outcome outcome = task.getValue();
+           LOG.info(outcome.toString());
+           simResultBracket = outcome.getMaster();
+           scoreBoard.addPlayers(outcome.getNames(), outcome.getScores());
+           logout.setDisable(logoutWasDisabled);
+           restart.setDisable(false);
+           scoreBoardButton.setDisable(false);
+           viewBracketButton.setDisable(false);
+           displayPane(table);
+       });
+       task.setOnFailed(e -> {
+           Throwable error = task.getException();
+           LOG.warning("Simulation failed: " + error);
+           simulate.setDisable(false);
+           logout.setDisable(logoutWasDisabled);
+           restart.setDisable(restartWasDisabled);
+           displayPane(previous);
+           showError(new Exception("Error simulating \n"+error.getMessage(),error),false);
+       });
+       task.setOnCancelled(e -> {
+           LOG.info("Simulation cancelled");
+           simulate.setDisable(false);
+           logout.setDisable(logoutWasDisabled);
+           restart.setDisable(restartWasDisabled);
+           displayPane(previous);
+       });
+       displayPane(createProgressPane(task));
+
+       Thread worker = new Thread(task, "simulation");
+       worker.setDaemon(true);
+       worker.start();
+    }
+
+    /**
+     * Shows how far a background simulation has got, with a button to cancel it
+     * @param task the running simulation
+     * @return the pane
+     */
+    private Pane createProgressPane(SimulationTask task){
+        Label status = new Label();
+        status.textProperty().bind(task.messageProperty());
+        ProgressBar progress = new ProgressBar();
+        progress.setPrefWidth(300);
+        progress.progressProperty().bind(task.progressProperty());
+        Button cancel = new Button("Cancel");
+        cancel.getStyleClass().add("buttons");
+        cancel.setOnAction(e -> task.cancel());
+
+        VBox pane = new VBox(10, status, progress, cancel);
+        pane.setAlignment(Pos.CENTER);
+        pane.setPadding(new Insets(20));
+        return pane;
     }
     
     /**
@@ -157,6 +241,7 @@ public class MarchMadnessGUI extends Application {
      * 
      */
     private void login(){            
+        closeEditLog();
         logout.setDisable(true);
         simulate.setDisable(true);
         scoreBoardButton.setDisable(true);
@@ -180,11 +265,14 @@ public class MarchMadnessGUI extends Application {
       */
     private void viewBracket(){
        selectedBracket=simResultBracket;
-       bracketPane=new BracketPane(selectedBracket);
-       GridPane full = bracketPane.getFullPane();
-       full.setAlignment(Pos.CENTER);
-       full.setDisable(true);
-       displayPane(new ScrollPane(full));
+       if(resultsCanvas==null){
+           resultsCanvas=new BracketCanvas(selectedBracket);
+           resultsView=new ScrollPane(resultsCanvas);
+       } else {
+           //only the slots that differ from the last results are drawn again
+           resultsCanvas.setBracket(selectedBracket);
+       }
+       displayPane(resultsView);
     }
     
     /**
@@ -193,9 +281,22 @@ public class MarchMadnessGUI extends Application {
      */
    private void chooseBracket(){
         btoolBar.setDisable(false);
-        bracketPane=new BracketPane(selectedBracket);
-        displayPane(bracketPane);
+        showBracketPane();
+        bracketPane.setDisable(false);
+    }
 
+    /**
+     * shows the region buttons of the selected bracket, building the pane the first time
+     * and only updating its labels after that
+     */
+    private void showBracketPane(){
+        if(bracketPane==null){
+            bracketPane=new BracketPane(selectedBracket);
+        } else {
+            bracketPane.setBracket(selectedBracket);
+            bracketPane.showButtonGrid();
+        }
+        displayPane(bracketPane);
     }
     /**
      * resets current selected sub tree
@@ -203,9 +304,8 @@ public class MarchMadnessGUI extends Application {
      */
     private void clear(){
         bracketPane.clear();
-        bracketPane=new BracketPane(selectedBracket);
         displayPane(bracketPane);
-        
+
     }
     
     /**
@@ -213,20 +313,10 @@ public class MarchMadnessGUI extends Application {
      */
     private void reset(){
         if(confirmReset()){
-            //horrible hack to reset
-            int lastPane = bracketPane.getLastPane();
-            selectedBracket=new Bracket(startingBracket);
-            bracketPane=new BracketPane(selectedBracket);
+            //cleared in place so the player keeps their bracket and the edit log sees the reset,
+            //the pane stays on the region the user was looking at and only the cleared labels change
+            bracketPane.resetBracket();
             displayPane(bracketPane);
-            /**
-             * puts the user chooseDivButton to the bracket section they were looking at prior to resetting
-             * uses fireEvent to make a fake mouseclick on the bracket the user was last on
-             * uses 5 as an out of bounds placeholder to show that the user has not yet been to a region bracket
-             * Try not to get lost in the constructor
-             */ 
-            if(lastPane != 5){    
-                Event.fireEvent(bracketPane.getButtons().get(lastPane), new MouseEvent(MouseEvent.MOUSE_CLICKED, 0, 0, 0, 0, MouseButton.PRIMARY, 1, false, false, false, false, true, false, false, false, false, false,null));
-            }
         }
     }
     
@@ -236,8 +326,9 @@ public class MarchMadnessGUI extends Application {
            bracketPane.setDisable(true);
            simulate.setDisable(false);
            logout.setDisable(false);
-           //save the bracket along with account info
-           serializeBracket(selectedBracket);
+           //save the bracket along with account info, the edit log is dropped once the save is on disk
+           serializeBracket(selectedBracket, editLog);
+           editLog = null;
        } else {
             infoAlert("You can only finalize a bracket once it has been completed.");
             //go chooseDivButton to bracket section selection screen
@@ -319,10 +410,7 @@ public class MarchMadnessGUI extends Application {
         finalizeButton.setOnAction(e->finalizeBracket());
         instructionsButton.setOnAction(e->instructions());
         restart.setOnAction(e->restart());
-        chooseDivButton.setOnAction(e->{
-            bracketPane=new BracketPane(selectedBracket);
-            displayPane(bracketPane);
-        });
+        chooseDivButton.setOnAction(e->showBracketPane());
     }
     
     /**
@@ -407,16 +495,18 @@ public class MarchMadnessGUI extends Application {
             }
 
 
-            if (playerMap.get(name) != null && !playerPass.equals("")) {
-                //check password of user
-                 
-                Bracket tmpBracket = this.playerMap.get(name);
-               
-                String password1 = tmpBracket.getPassword();
-
-                if (Objects.equals(password1, playerPass)) {
+            if (players.contains(name) && !playerPass.equals("")) {
+                //check password of user, the bracket is only read once it matches
+                if (players.checkPassword(name, playerPass)) {
                     // load bracket
-                    selectedBracket=playerMap.get(name);
+                    try {
+                        selectedBracket=players.checkOut(name);
+                    } catch (IOException e) {
+                        logout.setDisable(true);
+                        showError(new Exception("Error loading bracket \n"+e.getMessage(),e),false);
+                        return;
+                    }
+                    startEditLog();
                     chooseBracket();
                 } else {
                     logout.setDisable(true);
@@ -428,13 +518,13 @@ public class MarchMadnessGUI extends Application {
                 if(!name.equals("")&&!playerPass.equals("")){
                     //create new bracket
                     Bracket tmpPlayerBracket = new Bracket(startingBracket, name);
-                    playerBrackets.add(tmpPlayerBracket);
                     tmpPlayerBracket.setPassword(playerPass);
 
-                    playerMap.put(name, tmpPlayerBracket);
+                    players.add(tmpPlayerBracket);
                     selectedBracket = tmpPlayerBracket;
                     //alert user that an account has been created
                     infoAlert("No user with the Username \""  + name + "\" exists. A new account has been created.");
+                    startEditLog();
                     chooseBracket();
                 }
             }
@@ -443,16 +533,6 @@ public class MarchMadnessGUI extends Application {
         return loginPane;
     }
     
-    /**
-     * addAllToMap
-     * adds all the brackets to the map for login
-     */
-    private void addAllToMap(){
-        for(Bracket b:playerBrackets){
-            playerMap.put(b.getPlayerName(), b);   
-        }
-    }
-    
     /**
      * The Exception handler
      * Displays a error message to the user
@@ -509,26 +589,39 @@ public class MarchMadnessGUI extends Application {
      * Tayon Watson 5/5
      * serializedBracket
      * @param B The bracket the is going to be serialized
+     * @param log edit log of the bracket, deleted once the bracket is saved, or null
      */
-    private void serializeBracket(Bracket B){
-        FileOutputStream outStream = null;
-        ObjectOutputStream out = null;
+    private void serializeBracket(Bracket B, EditLog log){
     try 
     {
-      outStream = new FileOutputStream(B.getPlayerName()+".ser");
-      out = new ObjectOutputStream(outStream);
-      out.writeObject(B);
-      out.close();
+      //written and synced by the persistence queue's writer, the ui only hears back once it is on disk
+      String name = B.getPlayerName();
+      persistence.submit(B).whenComplete((saved, e) -> Platform.runLater(() -> {
+          if (e != null) {
+              // Grant osborn 5/6 hopefully this never happens 
+              showError(new Exception("Error saving bracket \n"+e.getMessage(),e),false);
+          } else {
+              LOG.info("Saved bracket of " + name);
+              if (log != null) {
+                  try {
+                      log.delete();
+                  } catch (IOException ex) {
+                      LOG.warning("Could not delete the edit log of " + name + ": " + ex);
+                  }
+              }
+          }
+      }));
     } 
-    catch(IOException e)
+    catch(InterruptedException e)
     {
-      // Grant osborn 5/6 hopefully this never happens 
+      Thread.currentThread().interrupt();
       showError(new Exception("Error saving bracket \n"+e.getMessage(),e),false);
     }
     }
     /**
      * Tayon Watson 5/5
      * deseralizedBracket
+     * reads a bracket saved by older versions in its own .ser file
      * @param filename of the serialized bracket file
      * @return deserialized bracket 
      */
@@ -552,22 +645,109 @@ public class MarchMadnessGUI extends Application {
       /**
      * Tayon Watson 5/5
      * deserializedBracket
-     * @return deserialized bracket 
+     * opens the bracket store, moving over any .ser files it does not have yet.
+     * the working directory is only searched for .ser files until one import has read them all,
+     * after that startup just reads the store's index
+     * @return the players of the store, their brackets not read yet
      */
-    private ArrayList<Bracket> loadBrackets()
+    private PlayerDirectory loadBrackets()
     {   
-        ArrayList<Bracket> list=new ArrayList<Bracket>();
-        File dir = new File(".");
-        for (final File fileEntry : dir.listFiles()){
-            String fileName = fileEntry.getName();
-            String extension = fileName.substring(fileName.lastIndexOf(".")+1);
-       
-            if (extension.equals("ser")){
-                list.add(deserializeBracket(fileName));
+        try {
+            bracketStore = BracketStore.open(Paths.get(STORE_DIRECTORY), new BracketCodec(TournamentField.of(startingBracket)));
+            Path imported = Paths.get(STORE_DIRECTORY, LEGACY_IMPORTED);
+            if (!Files.exists(imported)) {
+                boolean all = true;
+                File dir = new File(".");
+                for (final File fileEntry : dir.listFiles()){
+                    String fileName = fileEntry.getName();
+                    String extension = fileName.substring(fileName.lastIndexOf(".")+1);
+
+                    if (extension.equals("ser") && !bracketStore.contains(fileName.substring(0, fileName.lastIndexOf(".")))){
+                        Bracket legacy = deserializeBracket(fileName);
+                        if (legacy != null) {
+                            bracketStore.put(legacy);
+                        } else {
+                            all = false;
+                        }
+                    }
+                }
+                //a file that could not be read is tried again next start
+                if (all) {
+                    bracketStore.sync();
+                    Files.createFile(imported);
+                }
+            }
+            persistence = new PersistenceQueue(bracketStore);
+            return new PlayerDirectory(bracketStore);
+        } catch (IOException e) {
+            showError(new Exception("Error loading brackets \n"+e.getMessage(),e),true);
+            //showError exits on a fatal error; never carry on without the players
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * switches to reloaded team data, the next simulation and hover use it.
+     * a changed starting field only applies to brackets created after a restart,
+     * since every saved bracket was made from the old one
+     * @param snapshot the reloaded data
+     */
+    private void useTournamentData(TournamentSnapshot snapshot){
+        teamInfo=snapshot.getInfo();
+        TeamRegistry.install(TeamRegistry.of(teamInfo));
+        if (!snapshot.getField().equals(TournamentField.of(startingBracket))) {
+            LOG.warning("initialMatches.txt changed, the new field is used after a restart");
+        }
+    }
+
+    /**
+     * replays any picks the logged in player made in an earlier session that crashed
+     * and starts logging their picks
+     */
+    private void startEditLog(){
+        closeEditLog();
+        Path directory = Paths.get(STORE_DIRECTORY, EDIT_LOG_DIRECTORY);
+        try {
+            if (EditLog.recover(directory, bracketStore.getCodec(), selectedBracket)) {
+                LOG.info("Recovered unsaved picks of " + selectedBracket.getPlayerName());
+            }
+            editLog = EditLog.open(directory, bracketStore.getCodec(), selectedBracket);
+        } catch (IOException e) {
+            showError(new Exception("Error opening the edit log \n"+e.getMessage(),e),false);
+        }
+    }
+
+    /**
+     * stops logging the picks of the player logging out, their log is kept until they finalize
+     */
+    private void closeEditLog(){
+        if (editLog != null) {
+            try {
+                editLog.close();
+            } catch (IOException e) {
+                LOG.warning("Some picks could not be logged: " + e);
             }
+            editLog = null;
         }
-        return list;
     }
+
+    /**
+     * finishes any queued saves, then saves the bracket store index so the next start does not have to scan the store
+     */
+    @Override
+    public void stop() throws IOException {
+        closeEditLog();
+        if (reloader != null) {
+            reloader.close();
+        }
+        if (persistence != null) {
+            persistence.close();
+        }
+        if (bracketStore != null) {
+            bracketStore.close();
+        }
+    }
+
     /**
      * Eliza Doering 4/2019
      */
@@ -612,8 +792,7 @@ public class MarchMadnessGUI extends Application {
         }
 
         selectedBracket=new Bracket(startingBracket);
-        bracketPane=new BracketPane(selectedBracket);
-        displayPane(bracketPane);
+        showBracketPane();
         btoolBar.setDisable(false);
         bracketPane.setDisable(false);        
     }
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Monte Carlo mode for the tournament.
+ * Plays many independent tournaments on a shared SimulationCore, the same game model as
+ * TournamentInfo.simulate, split across one worker per core. Each worker has its own random
+ * stream and its own counters, so no Bracket is touched and the workers never share mutable state.
+ */
+public class MonteCarloSimulator {
+
+    private final SimulationCore core;
+    private final int workers;
+
+    /**
+     * Creates a simulator using every available core
+     * @param info team information used to play the games
+     * @param starting the 64 teams of the starting field in bracket order
+     */
+    public MonteCarloSimulator(TournamentInfo info, List<String> starting) {
+        this(new SimulationCore(info, TournamentField.of(starting)));
+    }
+
+    /**
+     * Creates a simulator for a season of a SeasonCatalog, using every available core
+     * @param season the season to play, loaded if it is not cached
+     */
+    public MonteCarloSimulator(SeasonCatalog.Season season) throws IOException {
+        this(season.getCore());
+    }
+
+    /**
+     * Creates a simulator using every available core
+     * @param core the engine playing the games
+     */
+    public MonteCarloSimulator(SimulationCore core) {
+        this(core, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param core the engine playing the games
+     * @param workers number of threads to split the tournaments across
+     */
+    public MonteCarloSimulator(SimulationCore core, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be positive");
+        }
+        this.core = core;
+        this.workers = workers;
+    }
+
+    /**
+     * Runs the tournaments with a time based seed
+     * @param tournaments number of tournaments to play
+     * @return the share of tournaments in which each team reached each round
+     */
+    public AdvancementTable run(long tournaments) throws InterruptedException {
+        return run(tournaments, System.nanoTime());
+    }
+
+    /**
+     * Runs the tournaments. The same seed, tournament count and worker count give the same table.
+     * @param tournaments number of tournaments to play
+     * @param seed seed of the stream the worker streams are split from
+     * @return the share of tournaments in which each team reached each round
+     */
+    public AdvancementTable run(long tournaments, long seed) throws InterruptedException {
+        if (tournaments < 1) {
+            throw new IllegalArgumentException("tournaments must be positive");
+        }
+        SplittableRandom root = new SplittableRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<long[]>> results = new ArrayList<>();
+        try {
+            for (int w = 0; w < workers; w++) {
+                long share = tournaments / workers + (w < tournaments % workers ? 1 : 0);
+                results.add(pool.submit(new Worker(root.split(), share)));
+            }
+            long[] counts = new long[TournamentField.TEAMS * AdvancementTable.ROUNDS];
+            for (Future<long[]> result : results) {
+                long[] partial = result.get();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += partial[i];
+                }
+            }
+            double[] probabilities = new double[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                probabilities[i] = (double) counts[i] / tournaments;
+            }
+            return new AdvancementTable(core.getField().names(), probabilities);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation worker failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays its share of tournaments on a private tree of team ids and counts
+     * how often each team wins a game in each round.
+     */
+    private class Worker implements Callable<long[]> {
+        private final SplittableRandom random;
+        private final long tournaments;
+
+        Worker(SplittableRandom random, long tournaments) {
+            this.random = random;
+            this.tournaments = tournaments;
+        }
+
+        @Override
+        public long[] call() {
+            long[] counts = new long[TournamentField.TEAMS * AdvancementTable.ROUNDS];
+            int[] tree = core.newTree();
+            for (long n = 0; n < tournaments; n++) {
+                if ((n & 0xFFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                core.play(random, tree);
+                for (int i = 0; i < TournamentField.GAMES; i++) {
+                    counts[tree[i] * AdvancementTable.ROUNDS + AdvancementTable.roundOfSlot(i)]++;
+                }
+            }
+            return counts;
+        }
+    }
+}
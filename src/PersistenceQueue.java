@@ -0,0 +1,156 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Write-behind saving of brackets to a BracketStore.
+ * submit encodes the bracket on the caller's thread, so later edits cannot leak into the save, and
+ * queues it. One writer thread takes everything that is queued, appends it to the store and syncs
+ * once for the whole group, so a burst of saves costs one fsync instead of one per player. Each
+ * submit returns a future that completes once its bracket is on disk. The queue is bounded and
+ * submit blocks while it is full, so a burst cannot outrun the disk without limit.
+ */
+public class PersistenceQueue implements Closeable {
+
+    /**
+     * default number of saves that can wait for the writer
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * marks the end of the queue for the writer
+     */
+    private static final Pending CLOSE = new Pending(null, null, null);
+
+    private final BracketStore store;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private boolean closed;
+
+    /**
+     * @param store where the brackets are saved
+     */
+    public PersistenceQueue(BracketStore store) {
+        this(store, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param store where the brackets are saved
+     * @param capacity number of saves that can wait for the writer before submit blocks
+     */
+    public PersistenceQueue(BracketStore store, int capacity) {
+        this.store = store;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::write, "bracket-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a bracket to be saved, blocking while the queue is full
+     * @param bracket the bracket, with a player name
+     * @return completes once the bracket has been synced to disk, or exceptionally if saving failed
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public CompletableFuture<Void> submit(Bracket bracket) throws InterruptedException {
+        if (bracket.getPlayerName() == null) {
+            throw new IllegalArgumentException("bracket has no player name");
+        }
+        Pending pending = new Pending(bracket.getPlayerName(), bracket.getPassword(), store.getCodec().encode(bracket));
+        //held while waiting for room so nothing can be queued behind the close marker
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("persistence queue is closed");
+            }
+            queue.put(pending);
+        }
+        return pending.done;
+    }
+
+    /**
+     * Stops accepting brackets and waits until everything already queued is saved
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            while (true) {
+                try {
+                    queue.put(CLOSE);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer loop: one group per pass, one sync per group
+     */
+    private void write() {
+        List<Pending> group = new ArrayList<>();
+        boolean last = false;
+        while (!last) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                //only close stops the writer
+                continue;
+            }
+            queue.drainTo(group);
+            last = group.remove(CLOSE);
+            if (group.isEmpty()) {
+                continue;
+            }
+            try {
+                for (Pending pending : group) {
+                    store.put(pending.name, pending.password, pending.payload);
+                }
+                store.sync();
+                for (Pending pending : group) {
+                    pending.done.complete(null);
+                }
+            } catch (IOException | RuntimeException e) {
+                for (Pending pending : group) {
+                    pending.done.completeExceptionally(e);
+                }
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * An encoded bracket waiting for the writer
+     */
+    private static final class Pending {
+        final String name;
+        final String password;
+        final byte[] payload;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(String name, String password, byte[] payload) {
+            this.name = name;
+            this.password = password;
+            this.payload = payload;
+        }
+    }
+}
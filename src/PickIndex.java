@@ -0,0 +1,88 @@
+/**
+ * Inverted index from (game slot, team) to the entries that picked that team to win that slot.
+ * Built once from encoded picks and read-only afterwards, so it can be shared between threads.
+ * Each slot keeps every entry number once, grouped by team in a flat array with per-team offsets,
+ * which is 63 ints per entry in total.
+ */
+public final class PickIndex {
+
+    private final int entryCount;
+    /**
+     * offsets[slot][team] is where team's entries start in members[slot], offsets[slot][64] is the end
+     */
+    private final int[][] offsets;
+    private final int[][] members;
+
+    /**
+     * @param entries encoded picks of complete brackets, see CompactBracket
+     */
+    public PickIndex(long[] entries) {
+        entryCount = entries.length;
+        offsets = new int[TournamentField.GAMES][TournamentField.TEAMS + 1];
+        members = new int[TournamentField.GAMES][entries.length];
+        int[] tree = new int[TournamentField.SLOTS];
+
+        for (long picks : entries) {
+            CompactBracket.decode(picks, tree);
+            for (int slot = 0; slot < TournamentField.GAMES; slot++) {
+                offsets[slot][tree[slot] + 1]++;
+            }
+        }
+        int[][] next = new int[TournamentField.GAMES][];
+        for (int slot = 0; slot < TournamentField.GAMES; slot++) {
+            for (int team = 0; team < TournamentField.TEAMS; team++) {
+                offsets[slot][team + 1] += offsets[slot][team];
+            }
+            next[slot] = offsets[slot].clone();
+        }
+        for (int entry = 0; entry < entries.length; entry++) {
+            CompactBracket.decode(entries[entry], tree);
+            for (int slot = 0; slot < TournamentField.GAMES; slot++) {
+                members[slot][next[slot][tree[slot]]++] = entry;
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries indexed
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * @param slot game slot, 0-62
+     * @param team team id
+     * @return how many entries picked team to win slot
+     */
+    public int count(int slot, int team) {
+        return offsets[slot][team + 1] - offsets[slot][team];
+    }
+
+    /**
+     * The entries that picked a team in a slot are entries(slot)[from(slot, team)] up to entries(slot)[to(slot, team) - 1]
+     * @param slot game slot, 0-62
+     * @return every entry number, grouped by the team picked in slot. Must not be modified.
+     */
+    public int[] entries(int slot) {
+        return members[slot];
+    }
+
+    /**
+     * @param slot game slot, 0-62
+     * @param team team id
+     * @return first position of team's entries in entries(slot)
+     */
+    public int from(int slot, int team) {
+        return offsets[slot][team];
+    }
+
+    /**
+     * @param slot game slot, 0-62
+     * @param team team id
+     * @return position after the last of team's entries in entries(slot)
+     */
+    public int to(int slot, int team) {
+        return offsets[slot][team + 1];
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every player of the pool, by name.
+ * The directory is built from the names and passwords in the BracketStore index, so players can log in
+ * before a single bracket has been read. A player's bracket is read from the store the first time it is
+ * asked for, and preload reads all of them in the background so they are ready for scoring.
+ * Whichever read finishes first wins, so a player always gets the same Bracket instance back.
+ * Brackets handed out for editing are checked out, so scoring knows which players may hold changes the
+ * store does not have yet.
+ */
+public class PlayerDirectory {
+
+    private final BracketStore store;
+    private final ConcurrentHashMap<String, String> passwords = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Bracket> brackets = new ConcurrentHashMap<>();
+    /**
+     * player names in the order they joined, saved players first
+     */
+    private final List<String> names = new ArrayList<>();
+    private final Set<String> checkedOut = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Indexes the players saved in a store without reading their brackets
+     * @param store the store holding the saved brackets
+     */
+    public PlayerDirectory(BracketStore store) {
+        this.store = store;
+        for (String name : store.names()) {
+            String password = store.getPassword(name);
+            passwords.put(name, password == null ? "" : password);
+            names.add(name);
+        }
+    }
+
+    /**
+     * @param name player name
+     * @return true if the player is saved or has been added this session
+     */
+    public boolean contains(String name) {
+        return passwords.containsKey(name);
+    }
+
+    /**
+     * @param name player name
+     * @param password the password the player entered
+     * @return true if the player exists and the password matches
+     */
+    public boolean checkPassword(String name, String password) {
+        return Objects.equals(passwords.get(name), password);
+    }
+
+    /**
+     * Adds a player who has not been saved yet
+     * @param bracket the new player's bracket, with a name and password
+     */
+    public synchronized void add(Bracket bracket) {
+        String name = bracket.getPlayerName();
+        String password = bracket.getPassword() == null ? "" : bracket.getPassword();
+        if (passwords.putIfAbsent(name, password) != null) {
+            throw new IllegalArgumentException(name + " is already a player");
+        }
+        brackets.put(name, bracket);
+        names.add(name);
+        checkedOut.add(name);
+    }
+
+    /**
+     * @param name player name
+     * @return the player's bracket, read from the store on first use, or null if there is no such player
+     */
+    public Bracket get(String name) throws IOException {
+        Bracket bracket = brackets.get(name);
+        if (bracket != null || !contains(name)) {
+            return bracket;
+        }
+        Bracket read = store.get(name);
+        if (read == null) {
+            return null;
+        }
+        bracket = brackets.putIfAbsent(name, read);
+        return bracket == null ? read : bracket;
+    }
+
+    /**
+     * Gets a player's bracket for editing. From then on the player is scored from this instance,
+     * not from the copy in the store.
+     * @param name player name
+     * @return the player's bracket, or null if there is no such player
+     */
+    public Bracket checkOut(String name) throws IOException {
+        Bracket bracket = get(name);
+        if (bracket != null) {
+            checkedOut.add(name);
+        }
+        return bracket;
+    }
+
+    /**
+     * @return the players whose brackets were checked out or added this session
+     */
+    public Set<String> checkedOut() {
+        return new HashSet<>(checkedOut);
+    }
+
+    /**
+     * Reads every bracket that has not been read yet, one after another on a background thread.
+     * Reads go through the store's lock one at a time anyway, so more threads would only wait on each other.
+     * @return completes once every bracket is in memory, or exceptionally if a read failed
+     */
+    public CompletableFuture<Void> preload() {
+        List<String> toRead = namesInOrder();
+        return CompletableFuture.runAsync(() -> {
+            for (String name : toRead) {
+                try {
+                    get(name);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return every player's bracket in the order the players joined, reading any not read yet
+     */
+    public List<Bracket> brackets() throws IOException {
+        List<String> order = namesInOrder();
+        List<Bracket> list = new ArrayList<>(order.size());
+        for (String name : order) {
+            list.add(get(name));
+        }
+        return list;
+    }
+
+    /**
+     * @return every player's name in the order the players joined
+     */
+    public List<String> names() {
+        return namesInOrder();
+    }
+
+    /**
+     * @return the number of players
+     */
+    public int size() {
+        return passwords.size();
+    }
+
+    private synchronized List<String> namesInOrder() {
+        return new ArrayList<>(names);
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Answers "what are my chances?" for every player in the pool.
+ * The games still open on the master bracket are played many times on a SimulationCore, split
+ * across one worker per core, and each simulated finish is scored against every entry at once with
+ * ScoringKernel. Ties share a position, so everyone tied for the top score counts as finishing
+ * first and an entry is in the top three when fewer than three entries beat it outright.
+ */
+public class PoolOddsSimulator {
+
+    private final SimulationCore core;
+    private final int workers;
+
+    /**
+     * Creates a simulator using every available core
+     * @param core the engine playing the remaining games
+     */
+    public PoolOddsSimulator(SimulationCore core) {
+        this(core, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a simulator for a season of a SeasonCatalog, using every available core
+     * @param season the season being played, loaded if it is not cached
+     */
+    public PoolOddsSimulator(SeasonCatalog.Season season) throws IOException {
+        this(season.getCore());
+    }
+
+    /**
+     * @param core the engine playing the remaining games
+     * @param workers number of threads to split the simulations across
+     */
+    public PoolOddsSimulator(SimulationCore core, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be positive");
+        }
+        this.core = core;
+        this.workers = workers;
+    }
+
+    /**
+     * Entries that are not complete cannot be scored against a finished bracket and get zero odds
+     * @param master the master bracket, with the games played so far filled in
+     * @param entries the player brackets
+     * @param futures number of ways to play out the remaining games
+     * @return odds aligned with entries
+     */
+    public Odds run(Bracket master, List<Bracket> entries, int futures) throws InterruptedException {
+        TournamentField field = core.getField();
+        long[] encoded = new long[entries.size()];
+        boolean[] complete = new boolean[entries.size()];
+        int count = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                encoded[count] = CompactBracket.encode(entries.get(i), field);
+                complete[i] = true;
+                count++;
+            } catch (IllegalArgumentException notEncodable) {
+                complete[i] = false;
+            }
+        }
+        long[] pool = new long[count];
+        System.arraycopy(encoded, 0, pool, 0, count);
+        Odds odds = run(treeOf(master), pool, futures, System.nanoTime());
+
+        //spread the odds back out over the full entry list
+        double[] first = new double[entries.size()];
+        double[] topThree = new double[entries.size()];
+        for (int i = 0, next = 0; i < entries.size(); i++) {
+            if (complete[i]) {
+                first[i] = odds.getFirst(next);
+                topThree[i] = odds.getTopThree(next);
+                next++;
+            }
+        }
+        return new Odds(first, topThree, futures);
+    }
+
+    /**
+     * @param played team ids of the games played so far, -1 for open games, laid out like SimulationCore.newTree
+     * @param entries encoded picks of complete brackets
+     * @param futures number of ways to play out the remaining games
+     * @param seed seed of the stream the worker streams are split from
+     * @return odds aligned with entries
+     */
+    public Odds run(int[] played, long[] entries, int futures, long seed) throws InterruptedException {
+        if (futures < 1) {
+            throw new IllegalArgumentException("futures must be positive");
+        }
+        SplittableRandom root = new SplittableRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<long[]>> results = new ArrayList<>();
+        try {
+            for (int w = 0; w < workers; w++) {
+                int share = futures / workers + (w < futures % workers ? 1 : 0);
+                results.add(pool.submit(new Worker(root.split(), played, entries, share)));
+            }
+            //counts[2e] = times entry e finished first, counts[2e + 1] = times it finished top three
+            long[] counts = new long[2 * entries.length];
+            for (Future<long[]> result : results) {
+                long[] partial = result.get();
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += partial[i];
+                }
+            }
+            double[] first = new double[entries.length];
+            double[] topThree = new double[entries.length];
+            for (int e = 0; e < entries.length; e++) {
+                first[e] = (double) counts[2 * e] / futures;
+                topThree[e] = (double) counts[2 * e + 1] / futures;
+            }
+            return new Odds(first, topThree, futures);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation worker failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the master's results as a tree of team ids, -1 for open games
+     */
+    private int[] treeOf(Bracket master) {
+        TournamentField field = core.getField();
+        int[] tree = core.newTree();
+        for (int i = 0; i < TournamentField.GAMES; i++) {
+            String winner = master.getBracket().get(i);
+            if (!winner.equals("")) {
+                tree[i] = field.idOf(winner);
+                if (tree[i] < 0) {
+                    throw new IllegalArgumentException(winner + " in slot " + i + " is not in the field");
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Plays its share of futures and counts first and top three finishes per entry
+     */
+    private class Worker implements Callable<long[]> {
+        private final SplittableRandom random;
+        private final int[] played;
+        private final long[] entries;
+        private final int futures;
+
+        Worker(SplittableRandom random, int[] played, long[] entries, int futures) {
+            this.random = random;
+            this.played = played;
+            this.entries = entries;
+            this.futures = futures;
+        }
+
+        @Override
+        public long[] call() {
+            long[] counts = new long[2 * entries.length];
+            int[] tree = new int[TournamentField.SLOTS];
+            int[] scores = new int[entries.length];
+            int[] histogram = new int[ScoringKernel.MAX_SCORE + 1];
+            for (int n = 0; n < futures && !Thread.currentThread().isInterrupted(); n++) {
+                System.arraycopy(played, 0, tree, 0, TournamentField.SLOTS);
+                core.playRemaining(random, tree);
+                ScoringKernel.Results results = new ScoringKernel.Results(CompactBracket.encode(tree), CompactBracket.ALL_GAMES);
+
+                Arrays.fill(histogram, 0);
+                for (int e = 0; e < entries.length; e++) {
+                    scores[e] = ScoringKernel.score(entries[e], results);
+                    histogram[scores[e]]++;
+                }
+                //lowest score that fewer than three entries beat outright
+                int best = ScoringKernel.MAX_SCORE;
+                while (best > 0 && histogram[best] == 0) {
+                    best--;
+                }
+                int topThree = best;
+                int above = histogram[best];
+                while (topThree > 0 && above < 3) {
+                    topThree--;
+                    above += histogram[topThree];
+                }
+                for (int e = 0; e < entries.length; e++) {
+                    if (scores[e] == best) {
+                        counts[2 * e]++;
+                    }
+                    if (scores[e] >= topThree) {
+                        counts[2 * e + 1]++;
+                    }
+                }
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * Each entry's chance of finishing first and in the top three
+     */
+    public static final class Odds {
+        private final double[] first;
+        private final double[] topThree;
+        private final int futures;
+
+        Odds(double[] first, double[] topThree, int futures) {
+            this.first = first;
+            this.topThree = topThree;
+            this.futures = futures;
+        }
+
+        /**
+         * @param entry entry number
+         * @return the chance the entry finishes first, ties included
+         */
+        public double getFirst(int entry) {
+            return first[entry];
+        }
+
+        /**
+         * @param entry entry number
+         * @return the chance the entry finishes in the top three, ties included
+         */
+        public double getTopThree(int entry) {
+            return topThree[entry];
+        }
+
+        /**
+         * @return the number of simulated futures the odds are based on
+         */
+        public int getFutures() {
+            return futures;
+        }
+    }
+}
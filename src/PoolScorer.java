@@ -0,0 +1,268 @@
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores a whole pool of entries against a master bracket at once.
+ * The entries are split in halves on a fork-join pool until each piece is small enough to score
+ * on one thread with ScoringKernel, and every piece writes straight into its own range of one
+ * shared int[], so the result lines up with the entries and nothing is merged afterwards.
+ */
+public class PoolScorer {
+
+    /**
+     * entries scored by one task without splitting further
+     */
+    private static final int THRESHOLD = 4096;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a scorer on the common fork-join pool
+     */
+    public PoolScorer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool to run on
+     */
+    public PoolScorer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param entries encoded picks of complete brackets
+     * @param master encoded results so far
+     * @param decided mask of the game slots already played
+     * @return the scores, aligned with entries
+     */
+    public Result score(long[] entries, long master, long decided) {
+        return score(entries, new ScoringKernel.Results(master, decided));
+    }
+
+    /**
+     * @param entries encoded picks of complete brackets
+     * @param results the prepared master
+     * @return the scores, aligned with entries
+     */
+    public Result score(long[] entries, ScoringKernel.Results results) {
+        long start = System.nanoTime();
+        int[] scores = new int[entries.length];
+        pool.invoke(new EncodedTask(entries, results, scores, 0, entries.length));
+        return new Result(scores, System.nanoTime() - start);
+    }
+
+    /**
+     * Scores a memory-mapped pool, reading each entry's picks straight from the mapping
+     * @param entries the finalized brackets
+     * @param master the master bracket, possibly partially filled
+     * @return the scores, aligned with the records of the file
+     */
+    public Result score(BracketFile entries, Bracket master) {
+        return score(entries, new ScoringKernel.Results(
+                CompactBracket.encodePartial(master, entries.getField()), CompactBracket.decidedMask(master)));
+    }
+
+    /**
+     * @param entries the finalized brackets
+     * @param results the prepared master
+     * @return the scores, aligned with the records of the file
+     */
+    public Result score(BracketFile entries, ScoringKernel.Results results) {
+        return score(entries, results, 0, entries.size());
+    }
+
+    /**
+     * Scores records [from, to) of a memory-mapped pool, for scoring a large file in steps
+     * @param entries the finalized brackets
+     * @param results the prepared master
+     * @param from first record scored
+     * @param to one past the last record scored
+     * @return the scores, the first for record from
+     */
+    public Result score(BracketFile entries, ScoringKernel.Results results, int from, int to) {
+        if (from < 0 || to > entries.size() || from > to) {
+            throw new IndexOutOfBoundsException("records " + from + " to " + to + " of " + entries.size());
+        }
+        long start = System.nanoTime();
+        int[] scores = new int[to - from];
+        pool.invoke(new MappedTask(entries, results, scores, from, from, to));
+        return new Result(scores, System.nanoTime() - start);
+    }
+
+    /**
+     * Encodes and scores a list of brackets. Brackets that cannot be encoded,
+     * such as ones that are not complete, are scored with Bracket.scoreBracket instead.
+     * @param entries the player brackets
+     * @param master the master bracket, possibly partially filled
+     * @return the scores, aligned with entries
+     */
+    public Result score(List<Bracket> entries, Bracket master) {
+        long start = System.nanoTime();
+        TournamentField field = TournamentField.of(master);
+        ScoringKernel.Results results = new ScoringKernel.Results(
+                CompactBracket.encodePartial(master, field), CompactBracket.decidedMask(master));
+        int[] scores = new int[entries.size()];
+        pool.invoke(new BracketTask(entries, master, field, results, scores, 0, scores.length));
+        return new Result(scores, System.nanoTime() - start);
+    }
+
+    /**
+     * Scores entries[from, to) of an encoded pool
+     */
+    private static class EncodedTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] entries;
+        private final ScoringKernel.Results results;
+        private final int[] scores;
+        private final int from;
+        private final int to;
+
+        EncodedTask(long[] entries, ScoringKernel.Results results, int[] scores, int from, int to) {
+            this.entries = entries;
+            this.results = results;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    scores[i] = ScoringKernel.score(entries[i], results);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new EncodedTask(entries, results, scores, from, mid),
+                        new EncodedTask(entries, results, scores, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Scores records [from, to) of a bracket file into scores[i - base]
+     */
+    private static class MappedTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BracketFile entries;
+        private final ScoringKernel.Results results;
+        private final int[] scores;
+        //record number of scores[0]
+        private final int base;
+        private final int from;
+        private final int to;
+
+        MappedTask(BracketFile entries, ScoringKernel.Results results, int[] scores, int base, int from, int to) {
+            this.entries = entries;
+            this.results = results;
+            this.scores = scores;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    scores[i - base] = ScoringKernel.score(entries.picks(i), results);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MappedTask(entries, results, scores, base, from, mid),
+                        new MappedTask(entries, results, scores, base, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Encodes and scores entries[from, to) of a list of brackets
+     */
+    private static class BracketTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Bracket> entries;
+        private final Bracket master;
+        private final TournamentField field;
+        private final ScoringKernel.Results results;
+        private final int[] scores;
+        private final int from;
+        private final int to;
+
+        BracketTask(List<Bracket> entries, Bracket master, TournamentField field,
+                    ScoringKernel.Results results, int[] scores, int from, int to) {
+            this.entries = entries;
+            this.master = master;
+            this.field = field;
+            this.results = results;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    Bracket entry = entries.get(i);
+                    try {
+                        scores[i] = ScoringKernel.score(CompactBracket.encode(entry, field), results);
+                    } catch (IllegalArgumentException notEncodable) {
+                        scores[i] = entry.scoreBracket(master);
+                    }
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BracketTask(entries, master, field, results, scores, from, mid),
+                        new BracketTask(entries, master, field, results, scores, mid, to));
+            }
+        }
+    }
+
+    /**
+     * Scores of one batch plus how long it took
+     */
+    public static final class Result {
+        private final int[] scores;
+        private final long elapsedNanos;
+
+        Result(int[] scores, long elapsedNanos) {
+            this.scores = scores;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the scores, aligned with the entries that were scored
+         */
+        public int[] getScores() {
+            return scores;
+        }
+
+        /**
+         * @return wall clock time of the batch in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return throughput of the batch
+         */
+        public double getBracketsPerSecond() {
+            return elapsedNanos == 0 ? 0 : scores.length * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return a one line throughput report
+         */
+        @Override
+        public String toString() {
+            return String.format("Scored %d brackets in %.3f ms (%.0f brackets/s)",
+                    scores.length, elapsedNanos / 1e6, getBracketsPerSecond());
+        }
+    }
+}
@@ -1,29 +1,50 @@
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.value.ObservableValue;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.util.Callback;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Created by Sarah on 5/2/17.
  * @author Sarah Higgins and Ying Sun
  * ScoreBoardPane class is the class the displays the Scoreboard from the Main GUI.
- * It shows all of the Player's names and their scores.
+ * It shows all of the Player's names, ranks and scores.
+ * Scores are kept in a Leaderboard keyed by player name, so there is no limit on the number of players,
+ * updating a player changes their row instead of adding another, and ranks are shared between ties.
+ * The table reads its rows straight from the leaderboard a page at a time, so only the rows on screen
+ * are ever built. Scores may be handed in from any thread; they are collected, the latest score of each
+ * player winning, and applied to the leaderboard once per frame on the FX thread, which then redraws
+ * the visible rows. Sorting by rank or total points only flips which end of the leaderboard the rows are
+ * read from; the players' names have no index of their own, so that column does not sort.
  */
 public class ScoreBoardTable {
 
     /**
      * attributes
      */
-    private Map<Bracket, Integer> scores;
-    private static final int MAX_PLAYER_NUMBER = 16;
-    private TableView<Bracket> table;
-    private ObservableList<Bracket> data;
+    private final Leaderboard scores;
+    private TableView<Leaderboard.Entry> table;
+    //the rows, in leaderboard order, built from the leaderboard when the table asks for them
+    private final Rows data;
+    //scores handed in since the last frame, by player name
+    private Map<String, Integer> pending = new HashMap<>();
+    private boolean scheduled;
+    private final AnimationTimer flusher = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+            stop();
+        }
+    };
 
     /**
      * ScoreBoardPane constructor
@@ -31,22 +52,34 @@ public class ScoreBoardTable {
     @SuppressWarnings("unchecked")
     public ScoreBoardTable() {
         table = new TableView<>();
-        data = FXCollections.observableArrayList();
-        scores = new HashMap<>();
+        scores = new Leaderboard();
+        data = new Rows(scores);
 
         /**
-         * TableColumn userNameCol is the column on the left side of the table.
-         * userNameCol.setCellValueFactory() passes the data to the TableView object, which is
-         *                                   automatically sorted with the TableColumn.SortType.DESCENDING
-         *                                   code line.
+         * TableColumn rankCol is the column on the left side of the table, players with the same score share a rank
          */
-        TableColumn<Bracket, String> userNameCol = new TableColumn<>("Username");
+        TableColumn<Leaderboard.Entry, Number> rankCol = new TableColumn<>("Rank");
+        rankCol.setMinWidth(60);
+        rankCol.setMaxWidth(60);
+        rankCol.setStyle("-fx-border-width: 3px");
+        rankCol.setCellValueFactory(new Callback<TableColumn.CellDataFeatures<Leaderboard.Entry, Number>, ObservableValue<Number>>() {
+            public ObservableValue<Number> call(TableColumn.CellDataFeatures<Leaderboard.Entry, Number> b) {
+                return new SimpleIntegerProperty(b.getValue().getRank());
+            }
+        });
+        rankCol.setSortable(true);
+
+        /**
+         * TableColumn userNameCol is the column in the middle of the table.
+         * userNameCol.setCellValueFactory() passes the data to the TableView object
+         */
+        TableColumn<Leaderboard.Entry, String> userNameCol = new TableColumn<>("Username");
         userNameCol.setMinWidth(140);
         userNameCol.setMaxWidth(140);
         userNameCol.setStyle("-fx-border-width: 3px");
-        userNameCol.setCellValueFactory(new Callback<TableColumn.CellDataFeatures<Bracket, String>, ObservableValue<String>>() {
-            public ObservableValue<String> call(TableColumn.CellDataFeatures<Bracket, String> b) {
-                return new SimpleStringProperty(b.getValue().getPlayerName());
+        userNameCol.setCellValueFactory(new Callback<TableColumn.CellDataFeatures<Leaderboard.Entry, String>, ObservableValue<String>>() {
+            public ObservableValue<String> call(TableColumn.CellDataFeatures<Leaderboard.Entry, String> b) {
+                return new SimpleStringProperty(b.getValue().getName());
             }
         });
         userNameCol.setSortable(false);
@@ -54,21 +87,19 @@ public class ScoreBoardTable {
 
         /**
          * TableColumn totalPtsCol is the column on the right side of the table
-         * totalPtsCol.setCellValueFactory() passes the data to the TableView object, which is
-         *                                   automatically sorted with the TableColumn.SortType.DESCENDING
-         *                                   code line.
+         * totalPtsCol.setCellValueFactory() passes the data to the TableView object
          */
-        TableColumn<Bracket, Number> totalPtsCol = new TableColumn<>("Total Points");
+        TableColumn<Leaderboard.Entry, Number> totalPtsCol = new TableColumn<>("Total Points");
         totalPtsCol.setMinWidth(140);
         totalPtsCol.setMaxWidth(140);
         totalPtsCol.setStyle("-fx-border-width: 3px");
-        totalPtsCol.setCellValueFactory(new Callback<TableColumn.CellDataFeatures<Bracket, Number>, ObservableValue<Number>>() {
-            public ObservableValue<Number> call(TableColumn.CellDataFeatures<Bracket, Number> b) {
-                return new SimpleIntegerProperty(scores.get(b.getValue()));
+        totalPtsCol.setCellValueFactory(new Callback<TableColumn.CellDataFeatures<Leaderboard.Entry, Number>, ObservableValue<Number>>() {
+            public ObservableValue<Number> call(TableColumn.CellDataFeatures<Leaderboard.Entry, Number> b) {
+                return new SimpleIntegerProperty(b.getValue().getScore());
             }
         });
         totalPtsCol.setSortable(true);
-        totalPtsCol.setSortType(TableColumn.SortType.ASCENDING); //sorts column from highest to lowest
+        totalPtsCol.setSortType(TableColumn.SortType.DESCENDING); //sorts column from highest to lowest
 
         /**
          * TableView table_view is what the user sees in the GUI. This creates the table.
@@ -77,39 +108,202 @@ public class ScoreBoardTable {
         
         table.setItems(data);
         table.setEditable(false);
+        //the leaderboard keeps the order, sorting only picks the end the rows start from
+        table.setSortPolicy(t -> {
+            boolean reversed = false;
+            if (!t.getSortOrder().isEmpty()) {
+                TableColumn<Leaderboard.Entry, ?> first = t.getSortOrder().get(0);
+                boolean ascending = first.getSortType() == TableColumn.SortType.ASCENDING;
+                reversed = first == totalPtsCol ? ascending : !ascending;
+            }
+            if (data.setReversed(reversed)) {
+                t.refresh();
+            }
+            return true;
+        });
         
         //table.getSelectionModel().setCellSelectionEnabled(true
-        table.sort();
-        table.getColumns().setAll(userNameCol, totalPtsCol);
+        table.getColumns().setAll(rankCol, userNameCol, totalPtsCol);
+        table.getSortOrder().add(totalPtsCol);
         
     }
 
-    public TableView<Bracket> start() {
+    public TableView<Leaderboard.Entry> start() {
                 
         return table;
     }
 
     //Ying's code, method addPlayer adds a player to the Bracket
     public void addPlayer(Bracket name, int score) {
-        try {
-            if (scores == null) {
-                scores = new HashMap<Bracket, Integer>();
-            }
-            //only allow to update the existing player score or add new player if there
-            //is less than 16 players
-            if (scores.get(name) != null || scores.size() < MAX_PLAYER_NUMBER) {
-                scores.put(name, score);
-                data.add(name);
-                //System.out.println("added: " + name.getPlayerName() + " " + score);
+        synchronized (this) {
+            pending.put(name.getPlayerName(), score);
+        }
+        schedule();
+    }
+
+    /**
+     * Adds or updates many players; the rows change at the next frame
+     * @param names the players' names
+     * @param scores their scores, in the same order
+     */
+    public void addPlayers(List<String> names, int[] scores) {
+        synchronized (this) {
+            for (int i = 0; i < scores.length; i++) {
+                pending.put(names.get(i), scores[i]);
             }
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
+        }
+        schedule();
+    }
+
+    /**
+     * Applies the scores handed in so far now instead of at the next frame. FX thread only.
+     */
+    public void flush() {
+        Map<String, Integer> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new HashMap<>();
+            scheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        Leaderboard.Entry selected = table.getSelectionModel().getSelectedItem();
+        int before = scores.size();
+        for (Map.Entry<String, Integer> e : batch.entrySet()) {
+            scores.update(e.getKey(), e.getValue());
+        }
+        data.changed(before);
+        //every row was replaced, so put the selection back on the same player wherever they are now
+        if (selected != null && scores.contains(selected.getName())) {
+            table.getSelectionModel().clearAndSelect(data.rowOf(selected.getName()));
         }
     }
 
+    /**
+     * @param name a player's name
+     * @return the player's rank, shared with everyone on the same score
+     * @throws IllegalArgumentException if the player has no score
+     */
+    public int rankOf(String name) {
+        return scores.rank(name);
+    }
+
+    /**
+     * @return the board itself, for rank and top k queries. FX thread only.
+     */
+    public Leaderboard getLeaderboard() {
+        return scores;
+    }
+
     //Ying's code, method clears the players from the Bracket
     public void clearPlayers() {
-        scores = new HashMap<Bracket, Integer>();
-        data = FXCollections.observableArrayList();
+        synchronized (this) {
+            pending.clear();
+        }
+        int before = scores.size();
+        scores.clear();
+        data.changed(before);
+    }
+
+    /**
+     * Makes sure a frame will apply the pending scores
+     */
+    private void schedule() {
+        synchronized (this) {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        if (Platform.isFxApplicationThread()) {
+            flusher.start();
+        } else {
+            Platform.runLater(flusher::start);
+        }
+    }
+
+    /**
+     * The table's rows, read from the leaderboard in pages of PAGE_ROWS. Pages recently read are kept
+     * until the leaderboard changes, so scrolling only walks the tree once per page.
+     */
+    private static final class Rows extends ObservableListBase<Leaderboard.Entry> {
+
+        private static final int PAGE_ROWS = 64;
+        private static final int MAX_PAGES = 32;
+
+        private final Leaderboard board;
+        //lowest score first
+        private boolean reversed;
+        private final LinkedHashMap<Integer, List<Leaderboard.Entry>> pages =
+                new LinkedHashMap<Integer, List<Leaderboard.Entry>>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Integer, List<Leaderboard.Entry>> eldest) {
+                        return size() > MAX_PAGES;
+                    }
+                };
+
+        Rows(Leaderboard board) {
+            this.board = board;
+        }
+
+        @Override
+        public Leaderboard.Entry get(int index) {
+            if (index < 0 || index >= board.size()) {
+                throw new IndexOutOfBoundsException("row " + index + " of " + board.size());
+            }
+            int position = reversed ? board.size() - 1 - index : index;
+            int page = position / PAGE_ROWS;
+            List<Leaderboard.Entry> rows = pages.get(page);
+            if (rows == null) {
+                rows = board.range(page * PAGE_ROWS, PAGE_ROWS);
+                pages.put(page, rows);
+            }
+            return rows.get(position % PAGE_ROWS);
+        }
+
+        /**
+         * @param reversed true for the lowest score first
+         * @return true if the order changed
+         */
+        boolean setReversed(boolean reversed) {
+            if (this.reversed == reversed) {
+                return false;
+            }
+            //the cached pages hold positions, not rows, so they stay valid
+            this.reversed = reversed;
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return board.size();
+        }
+
+        /**
+         * @param name a player on the board
+         * @return the player's row
+         */
+        int rowOf(String name) {
+            int position = board.position(name);
+            return reversed ? board.size() - 1 - position : position;
+        }
+
+        /**
+         * Drops the cached pages and tells the table every row was replaced. Players are added and
+         * removed at their ranked positions and an updated score moves a player, so there is no
+         * smaller change that describes a batch correctly.
+         * @param before the number of rows before the leaderboard changed
+         */
+        void changed(int before) {
+            pages.clear();
+            int after = board.size();
+            if (before == 0 && after == 0) {
+                return;
+            }
+            beginChange();
+            nextReplace(0, after, Collections.nCopies(before, (Leaderboard.Entry) null));
+            endChange();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+/**
+ * Branch-free version of Bracket.scoreBracket working on CompactBracket picks.
+ * A pick is correct when the entry and the master agree on which child won the slot and the
+ * entry's team was also correct in the chosen child slot, so correctness is built round by round:
+ * the first round is a plain bit compare, every later round pulls the correctness of the chosen
+ * child out of the previous round's bits. Each round's slots are contiguous bits
+ * (slots 31-62, 15-30, 7-14, 3-6, 1-2, 0), so the children of a round are exactly the
+ * even/odd bits of the round before. Every step is a handful of shifts, masks and
+ * Long.bitCount calls, with no memory access beyond the prepared Results.
+ * Points per round are 1, 2, 4, 8, 16 and 32, the same weights as Bracket.scoreBracket.
+ */
+public final class ScoringKernel {
+
+    /**
+     * highest possible score, 32 points in each round
+     */
+    public static final int MAX_SCORE = 192;
+
+    private ScoringKernel() {
+    }
+
+    /**
+     * Scores an entry against a finished tournament
+     * @param entry encoded picks of a complete bracket
+     * @param master encoded results of a complete master bracket
+     * @return the same score as Bracket.scoreBracket
+     */
+    public static int score(long entry, long master) {
+        return score(entry, new Results(master, CompactBracket.ALL_GAMES));
+    }
+
+    /**
+     * Scores an entry against a tournament in progress.
+     * When scoring many entries, prepare the Results once and use score(long, Results).
+     * @param entry encoded picks of a complete bracket
+     * @param master encoded results so far, see CompactBracket.encodePartial
+     * @param decided mask of the game slots already played, see CompactBracket.decidedMask
+     * @return the points earned in the games played so far
+     */
+    public static int score(long entry, long master, long decided) {
+        return score(entry, new Results(master, decided));
+    }
+
+    /**
+     * @param entry encoded picks of a complete bracket
+     * @param results the master bracket, prepared
+     * @return the points earned in the games played so far
+     */
+    public static int score(long entry, Results results) {
+        long same = ~(entry ^ results.master) & results.decided;
+
+        //round of 64, slots 31-62: both children are first round slots, which are always right
+        long correct = (same >>> 31) & 0xFFFFFFFFL;
+        int score = Long.bitCount(correct);
+
+        //later rounds: slot 2^k - 1 + j has its children at bits 2j and 2j+1 of the round below
+        correct = (same >>> 15) & 0xFFFFL & evenBits(chosenChild(correct, results.wentRight[1]), 16);   //round of 32
+        score += Long.bitCount(correct) << 1;
+        correct = (same >>> 7) & 0xFFL & evenBits(chosenChild(correct, results.wentRight[2]), 8);       //sweet 16
+        score += Long.bitCount(correct) << 2;
+        correct = (same >>> 3) & 0xFL & evenBits(chosenChild(correct, results.wentRight[3]), 4);        //quarters
+        score += Long.bitCount(correct) << 3;
+        correct = (same >>> 1) & 0x3L & evenBits(chosenChild(correct, results.wentRight[4]), 2);        //semi
+        score += Long.bitCount(correct) << 4;
+        correct = same & 0x1L & evenBits(chosenChild(correct, results.wentRight[5]), 1);                //finals
+        score += Long.bitCount(correct) << 5;
+        return score;
+    }
+
+    /**
+     * Moves the correctness of the child the master picked onto the even bit of each pair
+     * @param below correct picks of the round below, one bit per slot
+     * @param wentRight the even bit of a pair is set when the master picked the right child
+     */
+    private static long chosenChild(long below, long wentRight) {
+        return (below & ~wentRight) | ((below >>> 1) & wentRight);
+    }
+
+    /**
+     * @param slot game slot, 0-62
+     * @return the points for picking the winner of that slot
+     */
+    public static int pointsForSlot(int slot) {
+        return 1 << AdvancementTable.roundOfSlot(slot);
+    }
+
+    /**
+     * Packs bits 0, 2, 4, ... of a value into its low bits
+     * @param x the value, at most 2 * width bits wide
+     * @param width number of bits to keep, a power of two up to 32
+     */
+    static long evenBits(long x, int width) {
+        x &= 0x5555555555555555L;
+        if (width > 1) x = (x | (x >>> 1)) & 0x3333333333333333L;
+        if (width > 2) x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        if (width > 4) x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        if (width > 8) x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        if (width > 16) x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+
+    /**
+     * A master bracket prepared for scoring. Everything that depends only on the master,
+     * which child won each game spread onto the bit pairs of the round below, is worked out once here.
+     */
+    public static final class Results {
+        private final long master;
+        private final long decided;
+        private final long[] wentRight = new long[AdvancementTable.ROUNDS];
+
+        /**
+         * @param master encoded results so far, see CompactBracket.encodePartial
+         * @param decided mask of the game slots already played, see CompactBracket.decidedMask
+         */
+        public Results(long master, long decided) {
+            this.master = master & decided;
+            this.decided = decided;
+            for (int round = 1, offset = 15; round < AdvancementTable.ROUNDS; round++, offset >>= 1) {
+                int width = 1 << (AdvancementTable.ROUNDS - 1 - round);
+                for (int j = 0; j < width; j++) {
+                    if (((master >>> (offset + j)) & 1) != 0) {
+                        wentRight[round] |= 1L << (2 * j);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return encoded results so far
+         */
+        public long getMaster() {
+            return master;
+        }
+
+        /**
+         * @return mask of the game slots already played
+         */
+        public long getDecided() {
+            return decided;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The seasons kept under one root directory, one subdirectory per season named by its id, each
+ * holding that season's teamInfo.txt and initialMatches.txt.
+ * A season is only read the first time it is used. Loaded seasons are kept in an LRU cache bounded
+ * by an estimate of the memory they take, so going back to a recently used season is a map lookup
+ * while a long run over many archived seasons does not keep them all. Seasons are handed out as
+ * Season handles; a handle stays valid after its data was evicted and simply loads it again.
+ * Thread safe. Two threads missing the same season at once may both read it; one result is kept.
+ */
+public class SeasonCatalog {
+
+    /**
+     * default root directory, relative to the working directory
+     */
+    public static final String DEFAULT_ROOT = "seasons";
+
+    /**
+     * default bound on the estimated size of the loaded seasons
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+    private static final String TEAM_INFO_FILE = "teamInfo.txt";
+    private static final String STARTING_BRACKET_FILE = "initialMatches.txt";
+    /**
+     * fixed part of the estimate: the SimulationCore tables and the field
+     */
+    private static final long CORE_BYTES = TournamentField.TEAMS * TournamentField.TEAMS * 8L
+            + TournamentField.TEAMS * (4 + 8 + 96);
+    /**
+     * per team overhead of the Team object and its map entry, on top of its strings
+     */
+    private static final long TEAM_BYTES = 160;
+
+    private final Path root;
+    private final long maxBytes;
+    //access ordered, so iteration starts at the least recently used season
+    private final LinkedHashMap<String, Cached> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param root directory holding one subdirectory per season
+     */
+    public SeasonCatalog(Path root) {
+        this(root, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param root directory holding one subdirectory per season
+     * @param maxBytes bound on the estimated size of the loaded seasons; the most recently used
+     *                 season is kept even if it alone is larger
+     */
+    public SeasonCatalog(Path root, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        this.root = root.toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return every season under the root, ordered by id; empty if the root does not exist
+     */
+    public List<Season> seasons() throws IOException {
+        List<Season> seasons = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return seasons;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, SeasonCatalog::isSeason)) {
+            for (Path dir : dirs) {
+                seasons.add(new Season(this, dir.getFileName().toString(), dir));
+            }
+        }
+        seasons.sort((a, b) -> a.getId().compareTo(b.getId()));
+        return seasons;
+    }
+
+    /**
+     * @param id name of the season's directory
+     * @return a handle to the season, nothing is read yet
+     * @throws IllegalArgumentException if there is no such season
+     */
+    public Season season(String id) {
+        Path dir = root.resolve(id).normalize();
+        if (id.isEmpty() || !root.equals(dir.getParent()) || !isSeason(dir)) {
+            throw new IllegalArgumentException("No season " + id + " in " + root);
+        }
+        return new Season(this, id, dir);
+    }
+
+    /**
+     * @return the number of seasons loaded right now
+     */
+    public synchronized int cachedCount() {
+        return cache.size();
+    }
+
+    /**
+     * @return the estimated size of the seasons loaded right now
+     */
+    public synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * @return loads answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return loads that had to read the files
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Drops every loaded season, so the next use of each reads its files again
+     */
+    public synchronized void clear() {
+        cache.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * @param season a season of this catalog
+     * @return the season's data, from the cache or read now
+     * @throws IOException if a file of the season cannot be read or is malformed
+     */
+    TournamentSnapshot load(Season season) throws IOException {
+        synchronized (this) {
+            Cached cached = cache.get(season.getId());
+            if (cached != null) {
+                hits++;
+                return cached.snapshot;
+            }
+            misses++;
+        }
+        //read outside the lock so a slow season does not hold up hits on the others
+        TournamentSnapshot snapshot = TournamentSnapshot.load(season.getDirectory(), 1);
+        Cached loaded = new Cached(snapshot, weigh(snapshot));
+        synchronized (this) {
+            Cached raced = cache.get(season.getId());
+            if (raced != null) {
+                return raced.snapshot;
+            }
+            cache.put(season.getId(), loaded);
+            cachedBytes += loaded.bytes;
+            evict(season.getId());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Removes least recently used seasons until the estimate fits, never the one just used
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Cached>> eldest = cache.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Cached> entry = eldest.next();
+            if (!entry.getKey().equals(keep)) {
+                cachedBytes -= entry.getValue().bytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * @return a rough estimate of the memory a loaded season takes
+     */
+    private static long weigh(TournamentSnapshot snapshot) {
+        long bytes = CORE_BYTES;
+        for (Team team : snapshot.getInfo().getTeams().values()) {
+            bytes += TEAM_BYTES + 2L * (team.getName().length() + team.getNickname().length() + team.getInfo().length());
+        }
+        return bytes;
+    }
+
+    private static boolean isSeason(Path dir) {
+        return Files.isRegularFile(dir.resolve(TEAM_INFO_FILE)) && Files.isRegularFile(dir.resolve(STARTING_BRACKET_FILE));
+    }
+
+    private static final class Cached {
+        final TournamentSnapshot snapshot;
+        final long bytes;
+
+        Cached(TournamentSnapshot snapshot, long bytes) {
+            this.snapshot = snapshot;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Handle to one season of a catalog. Cheap to keep and pass around; the data behind it is
+     * loaded on first use and may be evicted and loaded again later.
+     */
+    public static final class Season {
+
+        private final SeasonCatalog catalog;
+        private final String id;
+        private final Path directory;
+
+        private Season(SeasonCatalog catalog, String id, Path directory) {
+            this.catalog = catalog;
+            this.id = id;
+            this.directory = directory;
+        }
+
+        /**
+         * @return the season's id, the name of its directory
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the directory holding the season's files
+         */
+        public Path getDirectory() {
+            return directory;
+        }
+
+        /**
+         * @return the season's teams, field and simulation engine
+         * @throws IOException if a file of the season cannot be read or is malformed
+         */
+        public TournamentSnapshot load() throws IOException {
+            return catalog.load(this);
+        }
+
+        /**
+         * @return the season's teams
+         */
+        public TournamentInfo getInfo() throws IOException {
+            return load().getInfo();
+        }
+
+        /**
+         * @return the season's starting field
+         */
+        public TournamentField getField() throws IOException {
+            return load().getField();
+        }
+
+        /**
+         * @return the simulation engine for the season
+         */
+        public SimulationCore getCore() throws IOException {
+            return load().getCore();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Season && ((Season) o).catalog == catalog && ((Season) o).id.equals(id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
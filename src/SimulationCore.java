@@ -0,0 +1,203 @@
+import java.util.SplittableRandom;
+
+/**
+ * Primitive-only tournament engine shared by TournamentInfo.simulate and the bulk simulators.
+ * Teams are the dense ids of a TournamentField, their seed multipliers (1 - 0.02 * seed) are
+ * computed once at construction, and a tournament is played in place on an int[127] tree laid
+ * out like Bracket (children of slot i at 2i+1 and 2i+2, team id t starts in slot 63 + t).
+ * Playing a tournament allocates nothing. An instance is immutable and can be shared between
+ * threads as long as each thread uses its own tree and random stream.
+ */
+public final class SimulationCore {
+
+    /**
+     * Exact win probability for every pair of seeds 1-16, since it only depends on the two seeds
+     */
+    private static final double[][] SEED_WIN_PROBABILITIES = new double[17][17];
+    static {
+        for (int seed1 = 1; seed1 <= 16; seed1++) {
+            for (int seed2 = 1; seed2 <= 16; seed2++) {
+                SEED_WIN_PROBABILITIES[seed1][seed2] = exactWinProbability(1 - (seed1 * 0.02), 1 - (seed2 * 0.02));
+            }
+        }
+    }
+
+    private final TournamentField field;
+    private final int[] seeds;
+    private final double[] factors;
+    private final double[] winProbabilities;
+
+    /**
+     * @param info team information for every team in the field
+     * @param field the starting field
+     */
+    public SimulationCore(TournamentInfo info, TournamentField field) {
+        this.field = field;
+        seeds = new int[TournamentField.TEAMS];
+        factors = new double[TournamentField.TEAMS];
+        for (int id = 0; id < TournamentField.TEAMS; id++) {
+            Team team = info.getTeam(field.name(id));
+            if (team == null) {
+                throw new IllegalArgumentException("No team info for " + field.name(id));
+            }
+            seeds[id] = team.getRanking();
+            factors[id] = 1 - (team.getRanking() * 0.02);
+        }
+        winProbabilities = new double[TournamentField.TEAMS * TournamentField.TEAMS];
+        for (int a = 0; a < TournamentField.TEAMS; a++) {
+            for (int b = 0; b < TournamentField.TEAMS; b++) {
+                winProbabilities[a * TournamentField.TEAMS + b] = isStandardSeed(seeds[a]) && isStandardSeed(seeds[b])
+                        ? SEED_WIN_PROBABILITIES[seeds[a]][seeds[b]] : exactWinProbability(factors[a], factors[b]);
+            }
+        }
+    }
+
+    /**
+     * @return the field this core plays
+     */
+    public TournamentField getField() {
+        return field;
+    }
+
+    /**
+     * @param id team id
+     * @return the seed of the team
+     */
+    public int seedOf(int id) {
+        return seeds[id];
+    }
+
+    /**
+     * The exact chance that team1 beats team2 in one game, derived from the score equation rather than sampled
+     * @param team1 team id
+     * @param team2 team id
+     * @return the probability that team1 wins
+     */
+    public double winProbability(int team1, int team2) {
+        return winProbabilities[team1 * TournamentField.TEAMS + team2];
+    }
+
+    /**
+     * @return a new tree with the field in the first round slots and every game unplayed (-1)
+     */
+    public int[] newTree() {
+        int[] tree = new int[TournamentField.SLOTS];
+        resetTree(tree);
+        return tree;
+    }
+
+    /**
+     * Puts the field back in the first round slots and marks every game unplayed
+     * @param tree a tree from newTree
+     */
+    public void resetTree(int[] tree) {
+        for (int i = 0; i < TournamentField.GAMES; i++) {
+            tree[i] = -1;
+        }
+        for (int id = 0; id < TournamentField.TEAMS; id++) {
+            tree[TournamentField.GAMES + id] = id;
+        }
+    }
+
+    /**
+     * Plays all 63 games, writing each winner's id into its slot
+     * @param random the caller's random stream
+     * @param tree a tree from newTree, the first round slots must be filled
+     */
+    public void play(SplittableRandom random, int[] tree) {
+        for (int i = TournamentField.GAMES - 1; i >= 0; i--) {
+            tree[i] = playGame(random, tree[2 * i + 1], tree[2 * i + 2], null, i);
+        }
+    }
+
+    /**
+     * Plays only the games that are still unplayed (-1), keeping every result already in the tree
+     * @param random the caller's random stream
+     * @param tree a tree holding the games played so far, see newTree
+     */
+    public void playRemaining(SplittableRandom random, int[] tree) {
+        for (int i = TournamentField.GAMES - 1; i >= 0; i--) {
+            if (tree[i] < 0) {
+                tree[i] = playGame(random, tree[2 * i + 1], tree[2 * i + 2], null, i);
+            }
+        }
+    }
+
+    /**
+     * Plays all 63 games and records the points each team scored in each game
+     * @param random the caller's random stream
+     * @param tree a tree from newTree, the first round slots must be filled
+     * @param scores 127 long, scores[s] receives the points of the team in slot s for the game it played there
+     */
+    public void play(SplittableRandom random, int[] tree, int[] scores) {
+        for (int i = TournamentField.GAMES - 1; i >= 0; i--) {
+            tree[i] = playGame(random, tree[2 * i + 1], tree[2 * i + 2], scores, i);
+        }
+    }
+
+    /**
+     * Plays one game with the equation from TournamentInfo.simulate:
+     * (random 75-210) * (1 - 0.02 * seed), replayed until the scores differ
+     * @return the id of the winner
+     */
+    private int playGame(SplittableRandom random, int team1, int team2, int[] scores, int slot) {
+        double factor1 = factors[team1];
+        double factor2 = factors[team2];
+        int score1;
+        int score2;
+        do {
+            score1 = (int) (((random.nextDouble() * 136) + 75) * factor1);
+            score2 = (int) (((random.nextDouble() * 136) + 75) * factor2);
+        } while (score1 == score2);
+        if (scores != null) {
+            scores[2 * slot + 1] = score1;
+            scores[2 * slot + 2] = score2;
+        }
+        return score1 > score2 ? team1 : team2;
+    }
+
+    private static boolean isStandardSeed(int seed) {
+        return seed >= 1 && seed <= 16;
+    }
+
+    /**
+     * Each score is (int) (U * factor) with U uniform on [75, 211), so both score distributions are
+     * known exactly. Ties are replayed, which makes the win chance P(score1 > score2) / (1 - P(tie)).
+     */
+    private static double exactWinProbability(double factor1, double factor2) {
+        int low1 = (int) (75 * factor1);
+        int low2 = (int) (75 * factor2);
+        double[] scores1 = scoreDistribution(factor1, low1);
+        double[] scores2 = scoreDistribution(factor2, low2);
+        double win = 0;
+        double tie = 0;
+        double below2 = 0;
+        int next2 = 0;
+        for (int i = 0; i < scores1.length; i++) {
+            int score = low1 + i;
+            while (next2 < scores2.length && low2 + next2 < score) {
+                below2 += scores2[next2++];
+            }
+            win += scores1[i] * below2;
+            if (score >= low2 && score - low2 < scores2.length) {
+                tie += scores1[i] * scores2[score - low2];
+            }
+        }
+        return win / (1 - tie);
+    }
+
+    /**
+     * @return P(score == low + i) for every reachable score
+     */
+    private static double[] scoreDistribution(double factor, int low) {
+        int high = (int) (211 * factor);
+        double[] distribution = new double[high - low + 1];
+        for (int i = 0; i < distribution.length; i++) {
+            int score = low + i;
+            double from = Math.max(75, score / factor);
+            double to = Math.min(211, (score + 1) / factor);
+            distribution[i] = Math.max(0, to - from) / 136;
+        }
+        return distribution;
+    }
+}
@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import javafx.concurrent.Task;
+
+/**
+ * Plays the tournament and scores every player's bracket off the FX thread.
+ * The tournament is played into a fresh bracket, then the pool is scored on the fork-join pool in chunks
+ * of CHUNK_ENTRIES. Saved brackets are scored straight out of the pool file, a BracketFile of every saved
+ * bracket, as long as it was written at the store's current version; players missing from it and players
+ * checked out for editing this session are scored from their Bracket objects. When the pool file is
+ * missing or stale every bracket is fetched from the PlayerDirectory, waiting for any the background
+ * preload has not read yet, and the pool file is written again for the next run.
+ * Progress is reported after every chunk and a cancel request is noticed between chunks. Nothing the GUI
+ * shows is touched here; the caller picks the Outcome up in its succeeded handler, which runs on the FX thread.
+ */
+public class SimulationTask extends Task<SimulationTask.Outcome> {
+
+    /**
+     * brackets scored between progress updates and cancel checks
+     */
+    public static final int CHUNK_ENTRIES = 16384;
+
+    private static final Logger LOG = Logger.getLogger(SimulationTask.class.getName());
+
+    private final TournamentInfo info;
+    private final Bracket starting;
+    private final PlayerDirectory players;
+    private final BracketStore store;
+    private final Path poolFile;
+    private final PoolScorer scorer;
+    //filled in by call, on the worker thread
+    private final List<String> names = new ArrayList<>();
+    private int[] scores;
+    private int done;
+    private int total;
+
+    /**
+     * @param info team data the games are played with
+     * @param starting the starting bracket, only read
+     * @param players the players whose brackets are scored
+     * @param store the store the players' saved brackets are in
+     * @param poolFile the pool file, read if current and written otherwise
+     */
+    public SimulationTask(TournamentInfo info, Bracket starting, PlayerDirectory players, BracketStore store, Path poolFile) {
+        this(info, starting, players, store, poolFile, new PoolScorer());
+    }
+
+    /**
+     * @param info team data the games are played with
+     * @param starting the starting bracket, only read
+     * @param players the players whose brackets are scored
+     * @param store the store the players' saved brackets are in
+     * @param poolFile the pool file, read if current and written otherwise
+     * @param scorer scores each chunk
+     */
+    public SimulationTask(TournamentInfo info, Bracket starting, PlayerDirectory players, BracketStore store,
+                          Path poolFile, PoolScorer scorer) {
+        this.info = info;
+        this.starting = new Bracket(starting);
+        this.players = players;
+        this.store = store;
+        this.poolFile = poolFile;
+        this.scorer = scorer;
+    }
+
+    @Override
+    protected Outcome call() throws Exception {
+        long start = System.nanoTime();
+        updateMessage("Simulating the tournament");
+        Bracket master = new Bracket(starting);
+        info.simulate(master);
+
+        TournamentField field = TournamentField.of(starting);
+        //read before any bracket, so a save made while scoring leaves the file written below stale
+        long version = store.version();
+        int mapped = -1;
+        try (BracketFile pool = openPool(field, version)) {
+            if (pool != null) {
+                mapped = scorePool(pool, master);
+                if (isCancelled()) {
+                    return null;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            //a record of the file is damaged, start over from the directory and write the file again
+            LOG.warning("Not using the pool file " + poolFile + ": " + e.getCause().getMessage());
+            names.clear();
+            done = 0;
+            mapped = -1;
+        }
+        if (mapped < 0) {
+            updateMessage("Loading brackets");
+            List<Bracket> entries = players.brackets();
+            total = entries.size();
+            scores = new int[total];
+            if (!scoreBrackets(entries, master)) {
+                return null;
+            }
+            writePool(field, entries, version);
+        }
+        updateProgress(1, 1);
+        updateMessage("Done");
+        return new Outcome(master, names, Arrays.copyOf(scores, names.size()), Math.max(mapped, 0),
+                System.nanoTime() - start);
+    }
+
+    /**
+     * @return the pool file if it holds the saved brackets of this store version, otherwise null
+     */
+    private BracketFile openPool(TournamentField field, long version) {
+        if (!Files.isRegularFile(poolFile)) {
+            return null;
+        }
+        try {
+            BracketFile pool = BracketFile.open(poolFile, field);
+            if (pool.getSourceVersion() == version) {
+                return pool;
+            }
+            pool.close();
+        } catch (IOException e) {
+            LOG.warning("Not using the pool file " + poolFile + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Scores the records of the pool file, then the players it does not cover
+     * @return the number of players scored from the file
+     */
+    private int scorePool(BracketFile pool, Bracket master) throws IOException {
+        Set<String> checkedOut = players.checkedOut();
+        List<Bracket> rest = new ArrayList<>();
+        for (String name : players.names()) {
+            if (checkedOut.contains(name) || pool.indexOf(name) < 0) {
+                rest.add(players.get(name));
+            }
+        }
+        total = pool.size() + rest.size();
+        scores = new int[total];
+
+        ScoringKernel.Results results = new ScoringKernel.Results(
+                CompactBracket.encodePartial(master, pool.getField()), CompactBracket.decidedMask(master));
+        int mapped = 0;
+        for (int from = 0; from < pool.size(); from += CHUNK_ENTRIES) {
+            if (isCancelled()) {
+                return mapped;
+            }
+            int to = Math.min(from + CHUNK_ENTRIES, pool.size());
+            progress(to - from);
+            int[] chunk = scorer.score(pool, results, from, to).getScores();
+            for (int i = from; i < to; i++) {
+                String name = pool.name(pool.playerId(i));
+                if (!checkedOut.contains(name)) {
+                    scores[names.size()] = chunk[i - from];
+                    names.add(name);
+                    mapped++;
+                }
+            }
+        }
+        scoreBrackets(rest, master);
+        return mapped;
+    }
+
+    /**
+     * Scores brackets from memory
+     * @return false if cancelled
+     */
+    private boolean scoreBrackets(List<Bracket> entries, Bracket master) {
+        for (int from = 0; from < entries.size(); from += CHUNK_ENTRIES) {
+            if (isCancelled()) {
+                return false;
+            }
+            int to = Math.min(from + CHUNK_ENTRIES, entries.size());
+            progress(to - from);
+            int[] chunk = scorer.score(entries.subList(from, to), master).getScores();
+            for (int i = from; i < to; i++) {
+                scores[names.size()] = chunk[i - from];
+                names.add(entries.get(i).getPlayerName());
+            }
+        }
+        return true;
+    }
+
+    private void progress(int chunk) {
+        updateMessage("Scoring brackets " + (done + 1) + " to " + (done + chunk) + " of " + total);
+        done += chunk;
+        updateProgress(done, total);
+    }
+
+    /**
+     * Writes the saved brackets to the pool file. Checked out players may have changes that are not
+     * saved, so they are left out and scored from memory on the next run. The store does not record
+     * when a bracket was finalized, so every record says the time is not known.
+     */
+    private void writePool(TournamentField field, List<Bracket> entries, long version) {
+        Set<String> checkedOut = players.checkedOut();
+        List<Bracket> saved = new ArrayList<>(entries.size());
+        for (Bracket bracket : entries) {
+            if (!checkedOut.contains(bracket.getPlayerName()) && store.contains(bracket.getPlayerName())) {
+                saved.add(bracket);
+            }
+        }
+        boolean[] finalized = new boolean[saved.size()];
+        Arrays.fill(finalized, true);
+        try {
+            BracketFile.write(poolFile, field, saved, finalized, new long[saved.size()], version);
+        } catch (IOException e) {
+            LOG.warning("Could not write the pool file " + poolFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The simulated tournament and everyone's score
+     */
+    public static final class Outcome {
+        private final Bracket master;
+        private final List<String> names;
+        private final int[] scores;
+        private final int mapped;
+        private final long elapsedNanos;
+
+        Outcome(Bracket master, List<String> names, int[] scores, int mapped, long elapsedNanos) {
+            this.master = master;
+            this.names = names;
+            this.scores = scores;
+            this.mapped = mapped;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the bracket the tournament was played into
+         */
+        public Bracket getMaster() {
+            return master;
+        }
+
+        /**
+         * @return the names of the players that were scored
+         */
+        public List<String> getNames() {
+            return names;
+        }
+
+        /**
+         * @return the scores, aligned with getNames
+         */
+        public int[] getScores() {
+            return scores;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Simulated and scored %d brackets, %d from the pool file, in %.1f ms",
+                    scores.length, mapped, elapsedNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide, immutable view of the team data, with the hover text of every team built up front.
+ * The GUI installs one at startup from the TournamentInfo it already loaded; if none has been
+ * installed, the first call to get loads teamInfo.txt once. Hovering a team is then a map lookup.
+ * Installing a new registry replaces the old one as a whole, so readers never see a mix of both.
+ */
+public final class TeamRegistry {
+
+    private static volatile TeamRegistry instance;
+
+    private final Map<String, Team> teams;
+    private final Map<String, String> tooltips;
+
+    private TeamRegistry(Map<String, Team> teams) {
+        HashMap<String, String> text = new HashMap<>();
+        for (Team t : teams.values()) {
+            //by Tyler - added the last two pieces of info to the pop up window
+            text.put(t.getName(), "Team: " + t.getName() + " | Ranking: " + t.getRanking() + "\nMascot: " + t.getNickname()
+                    + "\nInfo: " + t.getInfo() + "\nAverage Offensive PPG: " + t.getOffensePPG()
+                    + "\nAverage Defensive PPG: " + t.getDefensePPG());
+        }
+        //empty slots are hovered all the time, so their text is kept too
+        text.put("", notFound(""));
+        this.teams = Collections.unmodifiableMap(new HashMap<>(teams));
+        this.tooltips = Collections.unmodifiableMap(text);
+    }
+
+    /**
+     * @param info loaded team data
+     * @return a registry of the teams of info
+     */
+    public static TeamRegistry of(TournamentInfo info) {
+        return new TeamRegistry(info.getTeams());
+    }
+
+    /**
+     * @return the installed registry, loading teamInfo.txt the first time if none was installed
+     */
+    public static TeamRegistry get() throws IOException {
+        TeamRegistry registry = instance;
+        if (registry == null) {
+            synchronized (TeamRegistry.class) {
+                registry = instance;
+                if (registry == null) {
+                    registry = of(new TournamentInfo());
+                    instance = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Makes a registry the one returned by get
+     * @param registry the new registry
+     */
+    public static void install(TeamRegistry registry) {
+        instance = registry;
+    }
+
+    /**
+     * @param name team name
+     * @return the team, or null if there is no such team
+     */
+    public Team getTeam(String name) {
+        return teams.get(name);
+    }
+
+    /**
+     * @param name team name, or "" for an empty slot
+     * @return the text shown when the team is hovered
+     */
+    public String tooltipText(String name) {
+        String text = tooltips.get(name);
+        return text != null ? text : notFound(name);
+    }
+
+    /**
+     * @return the number of teams
+     */
+    public int size() {
+        return teams.size();
+    }
+
+    private static String notFound(String name) {
+        return "Info for " + name + "not found";
+    }
+}
@@ -0,0 +1,235 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compiles teamInfo.txt into a binary team table and loads it back.
+ * The table is written the first time the text is read and again whenever the text changes, so later
+ * starts map the table instead of parsing text. The table records the size and modification time of
+ * the text it was compiled from, and a CRC32 of its contents; a stale or damaged table is ignored and
+ * rebuilt from the text. The text parser checks every field and reports the line it failed on.
+ * <p>
+ * Table layout, big-endian: int MAGIC, int VERSION, int team count, long source size, long source
+ * modification time, int offset of the string section, int CRC32 of everything after the header;
+ * then one RECORD_BYTES record per team (int id, int ranking, double offensive PPG, double defensive PPG,
+ * and the string section offsets of name, nickname and info), then the strings as length prefixed UTF-8.
+ */
+public final class TeamTableCompiler {
+
+    private static final int MAGIC = 0x4D4D5454;           //"MMTT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 36;
+    private static final int RECORD_BYTES = 36;
+    /**
+     * lines per team in the text format: name, nickname, info, ranking, offensive PPG, defensive PPG, blank
+     */
+    private static final int LINES_PER_TEAM = 7;
+
+    private TeamTableCompiler() {
+    }
+
+    /**
+     * Loads the teams from the compiled table, compiling it first if it is missing or older than the text
+     * @param text teamInfo.txt
+     * @param table where the compiled table is kept
+     * @return the teams in text order
+     */
+    public static List<Team> load(Path text, Path table) throws IOException {
+        long size = Files.size(text);
+        long modified = Files.getLastModifiedTime(text).toMillis();
+        if (Files.exists(table)) {
+            try {
+                List<Team> teams = loadTable(table, size, modified);
+                if (teams != null) {
+                    return teams;
+                }
+            } catch (IOException damaged) {
+                //rebuilt from the text below
+            }
+        }
+        List<Team> teams = parseText(text);
+        try {
+            compile(teams, table, size, modified);
+        } catch (IOException readOnly) {
+            //the table only saves time, the text is still the source of truth
+        }
+        return teams;
+    }
+
+    /**
+     * Parses the text format, checking every field
+     * @param text teamInfo.txt
+     * @return the teams in text order
+     * @throws IOException naming the file and line of the first malformed field
+     */
+    public static List<Team> parseText(Path text) throws IOException {
+        List<Team> teams = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(text, StandardCharsets.UTF_8)) {
+            int line = 0;
+            String name;
+            while ((name = br.readLine()) != null) {
+                line++;
+                if (name.trim().isEmpty()) {
+                    throw error(text, line, "expected a team name, got an empty line");
+                }
+                String nickname = required(br.readLine(), text, line + 1, "nickname");
+                String info = required(br.readLine(), text, line + 2, "info");
+                int ranking = parseRanking(required(br.readLine(), text, line + 3, "ranking"), text, line + 3);
+                double offensive = parsePPG(required(br.readLine(), text, line + 4, "offensive PPG"), text, line + 4);
+                double defensive = parsePPG(required(br.readLine(), text, line + 5, "defensive PPG"), text, line + 5);
+                String separator = br.readLine();
+                if (separator != null && !separator.trim().isEmpty()) {
+                    throw error(text, line + 6, "expected an empty line between teams, got \"" + separator + "\"");
+                }
+                teams.add(new Team(name, nickname, info, ranking, offensive, defensive));
+                line += LINES_PER_TEAM - 1;
+            }
+        }
+        return teams;
+    }
+
+    /**
+     * Writes a team table
+     * @param teams the teams, their position is their id
+     * @param table the file to write, replaced if it exists
+     * @param sourceSize size of the text the teams were read from
+     * @param sourceModified modification time of that text in milliseconds
+     */
+    public static void compile(List<Team> teams, Path table, long sourceSize, long sourceModified) throws IOException {
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream stringOut = new DataOutputStream(strings);
+        int stringsOffset = HEADER_BYTES + teams.size() * RECORD_BYTES;
+        ByteBuffer body = ByteBuffer.allocate(teams.size() * RECORD_BYTES);
+        for (int id = 0; id < teams.size(); id++) {
+            Team t = teams.get(id);
+            body.putInt(id).putInt(t.getRanking()).putDouble(t.getOffensePPG()).putDouble(t.getDefensePPG());
+            for (String s : new String[]{t.getName(), t.getNickname(), t.getInfo()}) {
+                body.putInt(stringOut.size());
+                byte[] utf = s.getBytes(StandardCharsets.UTF_8);
+                stringOut.writeInt(utf.length);
+                stringOut.write(utf);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        crc.update(strings.toByteArray());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(teams.size()).putLong(sourceSize).putLong(sourceModified)
+                .putInt(stringsOffset).putInt((int) crc.getValue()).flip();
+        body.flip();
+
+        Path temp = table.resolveSibling(table.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer part : new ByteBuffer[]{header, body, ByteBuffer.wrap(strings.toByteArray())}) {
+                while (part.hasRemaining()) {
+                    out.write(part);
+                }
+            }
+        }
+        Files.move(temp, table, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a team table and reads the teams out of it
+     * @return the teams, or null if the table was compiled from a different version of the text
+     * @throws IOException if the table is damaged
+     */
+    private static List<Team> loadTable(Path table, long sourceSize, long sourceModified) throws IOException {
+        try (FileChannel channel = FileChannel.open(table, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException(table + " is not a team table");
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                throw new IOException(table + " is not a version " + VERSION + " team table");
+            }
+            if (map.getLong(12) != sourceSize || map.getLong(20) != sourceModified) {
+                return null;
+            }
+            int count = map.getInt(8);
+            int stringsOffset = map.getInt(28);
+            if (count < 0 || stringsOffset != HEADER_BYTES + (long) count * RECORD_BYTES || stringsOffset > length) {
+                throw new IOException(table + " is damaged");
+            }
+            byte[] body = new byte[(int) length - HEADER_BYTES];
+            ByteBuffer view = map.duplicate();
+            view.position(HEADER_BYTES);
+            view.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (map.getInt(32) != (int) crc.getValue()) {
+                throw new IOException(table + " failed its checksum");
+            }
+
+            List<Team> teams = new ArrayList<>(count);
+            for (int id = 0; id < count; id++) {
+                int at = HEADER_BYTES + id * RECORD_BYTES;
+                teams.add(new Team(string(map, stringsOffset, map.getInt(at + 24)),
+                        string(map, stringsOffset, map.getInt(at + 28)),
+                        string(map, stringsOffset, map.getInt(at + 32)),
+                        map.getInt(at + 4), map.getDouble(at + 8), map.getDouble(at + 16)));
+            }
+            return teams;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(table + " is damaged", e);
+        }
+    }
+
+    private static String string(MappedByteBuffer map, int stringsOffset, int offset) {
+        int at = stringsOffset + offset;
+        byte[] utf = new byte[map.getInt(at)];
+        ByteBuffer view = map.duplicate();
+        view.position(at + 4);
+        view.get(utf);
+        return new String(utf, StandardCharsets.UTF_8);
+    }
+
+    private static String required(String value, Path text, int line, String field) throws IOException {
+        if (value == null) {
+            throw error(text, line, "expected " + field + ", got the end of the file");
+        }
+        return value;
+    }
+
+    private static int parseRanking(String value, Path text, int line) throws IOException {
+        try {
+            int ranking = Integer.parseInt(value.trim());
+            if (ranking < 1 || ranking > 16) {
+                throw error(text, line, "ranking must be 1 to 16, got " + ranking);
+            }
+            return ranking;
+        } catch (NumberFormatException e) {
+            throw error(text, line, "expected a ranking, got \"" + value + "\"");
+        }
+    }
+
+    private static double parsePPG(String value, Path text, int line) throws IOException {
+        try {
+            double ppg = Double.parseDouble(value.trim());
+            if (!(ppg >= 0) || Double.isInfinite(ppg)) {
+                throw error(text, line, "points per game must be a non-negative number, got " + value);
+            }
+            return ppg;
+        } catch (NumberFormatException e) {
+            throw error(text, line, "expected points per game, got \"" + value + "\"");
+        }
+    }
+
+    private static IOException error(Path text, int line, String message) {
+        return new IOException(text.getFileName() + " line " + line + ": " + message);
+    }
+}
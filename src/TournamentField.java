@@ -0,0 +1,137 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The 64 teams of the starting bracket with dense integer ids.
+ * A team's id is its position in initialMatches.txt, so team id i always starts in bracket slot 63 + i.
+ * Instances are immutable and meant to be shared by every bracket of a tournament.
+ */
+public final class TournamentField {
+
+    public static final int TEAMS = 64;
+    public static final int SLOTS = 127;
+    public static final int GAMES = 63;
+
+    private final String[] names;
+    private final HashMap<String, Integer> ids;
+
+    private TournamentField(String[] names) {
+        this.names = names;
+        ids = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            if (ids.put(names[i], i) != null) {
+                throw new IllegalArgumentException(names[i] + " appears twice in the starting field");
+            }
+        }
+    }
+
+    /**
+     * @param starting the 64 teams in bracket order, as returned by TournamentInfo.loadStartingBracket
+     * @return the field
+     */
+    public static TournamentField of(List<String> starting) {
+        if (starting.size() != TEAMS) {
+            throw new IllegalArgumentException("starting field must have " + TEAMS + " teams, has " + starting.size());
+        }
+        return new TournamentField(starting.toArray(new String[TEAMS]));
+    }
+
+    /**
+     * Reads the field from the first round slots (63-126) of a bracket
+     * @param bracket any bracket of the tournament
+     * @return the field
+     */
+    public static TournamentField of(Bracket bracket) {
+        return of(bracket.getBracket().subList(GAMES, SLOTS));
+    }
+
+    /**
+     * @param slot any slot, 0-126
+     * @return the id of the first team in the subtree below slot
+     */
+    public static int firstTeamBelow(int slot) {
+        int depth = 31 - Integer.numberOfLeadingZeros(slot + 1);
+        return (slot - ((1 << depth) - 1)) * teamsBelow(slot);
+    }
+
+    /**
+     * The teams below a slot have consecutive ids, starting at firstTeamBelow
+     * @param slot any slot, 0-126
+     * @return the number of teams in the subtree below slot
+     */
+    public static int teamsBelow(int slot) {
+        int depth = 31 - Integer.numberOfLeadingZeros(slot + 1);
+        return TEAMS >> depth;
+    }
+
+    /**
+     * @param id team id, 0-63
+     * @return the name of the team
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @param name name of a team
+     * @return the id of the team, or -1 if it is not in the field
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the team names in id order
+     */
+    public List<String> names() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * @return a new list of the team names, as accepted by the Bracket(ArrayList) constructor
+     */
+    public ArrayList<String> toStartingList() {
+        return new ArrayList<>(Arrays.asList(names));
+    }
+
+    /**
+     * Fields are equal when they contain the same teams in the same order.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TournamentField && Arrays.equals(names, ((TournamentField) o).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(names);
+    }
+
+    /**
+     * A 64-bit digest of the team names in field order, for files that must only be read against the
+     * field they were written for. Unlike hashCode, two different fields practically never share one.
+     * @return the first 8 bytes of the SHA-256 of the names, each followed by a 0 byte
+     */
+    public long fingerprint() {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform is required to have SHA-256
+            throw new IllegalStateException(e);
+        }
+        for (String name : names) {
+            sha.update(name.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+        }
+        return ByteBuffer.wrap(sha.digest()).getLong();
+    }
+}
@@ -1,8 +1,13 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
 import java.util.concurrent.ExecutionException;
 
 
@@ -10,53 +15,49 @@ import java.util.concurrent.ExecutionException;
  * Created by Artem on 5/2/2017.
  */
 public class TournamentInfo{//renamed from teamInfo by matt 5/4
+    private static final String TEAM_INFO_FILE = "teamInfo.txt";
+    //compiled form of TEAM_INFO_FILE, see TeamTableCompiler
+    private static final String TEAM_TABLE_FILE = "teamInfo.bin";
+
+    private static final String STARTING_BRACKET_FILE = "initialMatches.txt";
+
     HashMap<String, Team> teams;
+    //where the files were read from, the starting bracket of simulateMany is read from here too
+    private final Path directory;
 
     public TournamentInfo() throws IOException{
+        this(Paths.get(""));
+    }
+
+    /**
+     * Loads the teams of a season kept in its own directory, such as an archived season of a SeasonCatalog
+     * @param directory the directory holding teamInfo.txt and initialMatches.txt
+     */
+    public TournamentInfo(Path directory) throws IOException{
+        this.directory = directory;
         teams = new HashMap<>();
         loadFromFile();
     }
 
     /**
-     * This private method will load all the team information from the teamInfo.txt file via a BufferedReader and load each team into
+     * This private method will load all the team information from the teamInfo.txt file and load each team into
      * the teams HashMap using their name as the key and the actual Team object as the data.
+     * The text is compiled into teamInfo.bin the first time, later runs map that instead of parsing the text.
      * @authors Artem, Rodrigo
      */
     private void loadFromFile() throws IOException{
-
-        String name;
-        String nickname;
-        String info;
-        int ranking;
-        double offensivePPG;
-        double defensivePPG;
-
-
-        try{
-            BufferedReader br = new BufferedReader(new FileReader("teamInfo.txt"));
-
-            while((name = br.readLine()) != null){
-            	nickname = br.readLine();
-                info = br.readLine();
-                ranking = Integer.parseInt(br.readLine());
-                offensivePPG = Double.parseDouble(br.readLine());
-                defensivePPG = Double.parseDouble(br.readLine());
-                
-                Team newTeam = new Team(name, nickname, info, ranking, offensivePPG, defensivePPG); //creates team with info
-
-                br.readLine();   //gets rid of empty line between team infos
-
-                teams.put(newTeam.getName(), newTeam);   //map team name with respective team object
-            }
-
-            br.close();
-
-        }
-        catch(IOException ioe) {
-            throw ioe;
+        for (Team newTeam : TeamTableCompiler.load(directory.resolve(TEAM_INFO_FILE), directory.resolve(TEAM_TABLE_FILE))) {
+            teams.put(newTeam.getName(), newTeam);   //map team name with respective team object
         }
     }
 
+    /**
+     * @return every team, by name
+     */
+    public Map<String, Team> getTeams(){
+        return Collections.unmodifiableMap(teams);
+    }
+
     /**
      * This method will take a parameter of a team name and return the Team object corresponding to it.
      * If it is unsuccessful, meaning the team does not exist, it will throw an exception.
@@ -76,28 +77,23 @@ public class TournamentInfo{//renamed from teamInfo by matt 5/4
      * @param startingBracket -- the bracket to be simulated upon. The master bracket
      */
     public void simulate(Bracket startingBracket){
-        for (int i = 62; i >= 0; i--) {
         /* The equation for score that I settled on is this:
          * (Random int 75-135) * (1 - 0.02 * seed ranking)
-         * This way, the multiplier would be between 0.68 and 0.98. Multiply that by 75-135, and you get a reasonable score with room for chance to prevail for lower teams. */
+         * This way, the multiplier would be between 0.68 and 0.98. Multiply that by 75-135, and you get a reasonable score with room for chance to prevail for lower teams.
+         * The games themselves are played by SimulationCore on team ids, the results are copied into the bracket afterwards */
+        SimulationCore core = new SimulationCore(this, TournamentField.of(startingBracket));
+        int[] tree = core.newTree();
+        int[] scores = new int[TournamentField.SLOTS];
+        core.play(new SplittableRandom(), tree, scores);
 
+        for (int i = 62; i >= 0; i--) {
             int index1 = 2*i+1;
             int index2 = 2*i+2;
 
-            Team team1 = teams.get(startingBracket.getBracket().get(index1));
-            Team team2 = teams.get(startingBracket.getBracket().get(index2));
+            startingBracket.setTeamScore(index1, scores[index1]);
+            startingBracket.setTeamScore(index2, scores[index2]);
 
-            int score1 = 0;
-            int score2 = 0;
-            while(score1==score2) {
-                score1 = (int) (((Math.random() * 136) + 75) * (1 - (team1.getRanking() * 0.02)));
-                score2 = (int) (((Math.random() * 136) + 75) * (1 - (team2.getRanking() * 0.02)));
-            }
-
-            startingBracket.setTeamScore(index1, score1);
-            startingBracket.setTeamScore(index2, score2);
-
-            if(score1>score2)
+            if(tree[i]==tree[index1])
                 startingBracket.moveTeamUp(index1);
             else
                 startingBracket.moveTeamUp(index2);
@@ -105,18 +101,48 @@ public class TournamentInfo{//renamed from teamInfo by matt 5/4
 
     }
 
+    /**
+     * Monte Carlo mode: plays the tournament many times across all cores without touching any bracket
+     * @param tournaments -- number of tournaments to play
+     * @return the probability of each team reaching each round
+     */
+    public AdvancementTable simulateMany(long tournaments) throws IOException, InterruptedException {
+        SimulationCore core = new SimulationCore(this, TournamentField.of(loadStartingBracket(directory)));
+        return new MonteCarloSimulator(core).run(tournaments);
+    }
+
+    /**
+     * Exact advancement odds, computed from the bracket tree instead of sampled.
+     * Games already filled in on the master bracket are treated as played, so this can be called after every game.
+     * @param master -- the master bracket, possibly partially filled
+     * @return the probability of each team reaching each round
+     */
+    public AdvancementTable computeOdds(Bracket master){
+        SimulationCore core = new SimulationCore(this, TournamentField.of(master));
+        return new ExactAdvancementCalculator(core).compute(master);
+    }
+
     /**
      * reads Strings from initialMatches.txt into an ArrayList in order to construct the starting bracket
      * @authors Matt, Artem
      * @return ArrayList of Strings
      */
     public static ArrayList<String> loadStartingBracket() throws IOException{
+        return loadStartingBracket(Paths.get(""));
+    }
+
+    /**
+     * reads the starting bracket of a season kept in its own directory
+     * @param directory the directory holding initialMatches.txt
+     * @return ArrayList of Strings
+     */
+    public static ArrayList<String> loadStartingBracket(Path directory) throws IOException{
         String name;
         ArrayList<String> starting = new ArrayList<String>();
 
 
         try{
-            BufferedReader br = new BufferedReader(new FileReader("initialMatches.txt"));
+            BufferedReader br = new BufferedReader(new FileReader(directory.resolve(STARTING_BRACKET_FILE).toFile()));
 
             while((name = br.readLine()) != null){
                 starting.add(name);
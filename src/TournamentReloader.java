@@ -0,0 +1,147 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Picks up changes to teamInfo.txt and initialMatches.txt while the program runs.
+ * A background thread watches the working directory. When either file changes it waits until the
+ * writes have settled, parses both files into a new TournamentSnapshot and swaps it in atomically.
+ * Whoever called current() before the swap keeps the old snapshot for as long as they need it; anyone
+ * calling it after gets the new one. A file that fails to parse is logged and the old snapshot stays.
+ */
+public class TournamentReloader implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(TournamentReloader.class.getName());
+
+    /**
+     * the files that make up a snapshot
+     */
+    private static final List<String> WATCHED = List.of("teamInfo.txt", "initialMatches.txt");
+
+    /**
+     * quiet time after a change before the files are read, editors often write a file in several steps
+     */
+    private static final long SETTLE_MILLIS = 250;
+
+    private final AtomicReference<TournamentSnapshot> current = new AtomicReference<>();
+    private final List<Consumer<TournamentSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private final WatchService watcher;
+    private final Thread thread;
+
+    /**
+     * Loads the first snapshot and starts watching the working directory
+     * @throws IOException if the files cannot be read or are malformed
+     */
+    public TournamentReloader() throws IOException {
+        current.set(TournamentSnapshot.load(1));
+        watcher = FileSystems.getDefault().newWatchService();
+        Paths.get("").toAbsolutePath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "tournament-reloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the latest snapshot
+     */
+    public TournamentSnapshot current() {
+        return current.get();
+    }
+
+    /**
+     * @param listener told about every new snapshot, on the reloader thread
+     */
+    public void addListener(Consumer<TournamentSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener a listener added before
+     */
+    public void removeListener(Consumer<TournamentSnapshot> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reads the files now and publishes the result
+     * @return the new snapshot
+     * @throws IOException if the files cannot be read or are malformed, the current snapshot is kept
+     */
+    public TournamentSnapshot reload() throws IOException {
+        TournamentSnapshot next;
+        synchronized (this) {
+            next = TournamentSnapshot.load(current.get().getVersion() + 1);
+            current.set(next);
+        }
+        for (Consumer<TournamentSnapshot> listener : listeners) {
+            listener.accept(next);
+        }
+        return next;
+    }
+
+    /**
+     * Stops watching
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = relevant(key);
+                //keep collecting until the files have been quiet for a while
+                while (changed) {
+                    WatchKey more = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                    if (more == null) {
+                        break;
+                    }
+                    relevant(more);
+                }
+                if (changed) {
+                    try {
+                        TournamentSnapshot next = reload();
+                        LOG.info("Reloaded tournament data, version " + next.getVersion());
+                    } catch (IOException | RuntimeException e) {
+                        LOG.warning("Keeping the current tournament data, reload failed: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //closed
+        }
+    }
+
+    /**
+     * Drains a watch key
+     * @return true if one of the watched files changed
+     */
+    private static boolean relevant(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || context instanceof Path && WATCHED.contains(((Path) context).getFileName().toString())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
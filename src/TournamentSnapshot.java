@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * One consistent version of the tournament data: the teams, the starting field and the simulation
+ * engine built from them. A snapshot never changes once built, so work that took one keeps seeing
+ * the same data however often the files are reloaded underneath it.
+ */
+public final class TournamentSnapshot {
+
+    private final TournamentInfo info;
+    private final TournamentField field;
+    private final SimulationCore core;
+    private final long version;
+
+    /**
+     * @param info the teams
+     * @param field the starting field
+     * @param version increases with every reload
+     * @throws IllegalArgumentException if a team of the field has no team info
+     */
+    public TournamentSnapshot(TournamentInfo info, TournamentField field, long version) {
+        this.info = info;
+        this.field = field;
+        this.core = new SimulationCore(info, field);
+        this.version = version;
+    }
+
+    /**
+     * Reads teamInfo.txt and initialMatches.txt from the working directory
+     * @param version version number of the snapshot
+     * @return the snapshot
+     * @throws IOException if a file cannot be read or is malformed
+     */
+    public static TournamentSnapshot load(long version) throws IOException {
+        return load(Paths.get(""), version);
+    }
+
+    /**
+     * Reads teamInfo.txt and initialMatches.txt from a season directory
+     * @param directory the directory holding both files
+     * @param version version number of the snapshot
+     * @return the snapshot
+     * @throws IOException if a file cannot be read or is malformed
+     */
+    public static TournamentSnapshot load(Path directory, long version) throws IOException {
+        TournamentInfo info = new TournamentInfo(directory);
+        ArrayList<String> starting = TournamentInfo.loadStartingBracket(directory);
+        try {
+            //a field with the wrong number of teams or a repeated team is a malformed file as well
+            return new TournamentSnapshot(info, TournamentField.of(starting), version);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the teams
+     */
+    public TournamentInfo getInfo() {
+        return info;
+    }
+
+    /**
+     * @return the starting field
+     */
+    public TournamentField getField() {
+        return field;
+    }
+
+    /**
+     * @return the simulation engine for this data
+     */
+    public SimulationCore getCore() {
+        return core;
+    }
+
+    /**
+     * @return the version number, higher for later reloads
+     */
+    public long getVersion() {
+        return version;
+    }
+}